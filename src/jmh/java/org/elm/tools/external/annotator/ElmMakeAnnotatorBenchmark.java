@@ -0,0 +1,69 @@
+package org.elm.tools.external.annotator;
+
+import com.intellij.openapi.util.TextRange;
+
+import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.elmmake.parser.ElmMakeReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/** The work of the annotator for the problems of one elm make run, apart from the annotation holder itself. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ElmMakeAnnotatorBenchmark {
+    @Param({"100", "1000", "5000"})
+    public int problemCount;
+
+    private String moduleText;
+    private LineIndex lineIndex;
+    private List<Problems> elm018Problems;
+    private List<Problems> elm019Problems;
+
+    @Setup
+    public void setUp() throws IOException {
+        moduleText = ElmMakeReports.moduleText();
+        lineIndex = new LineIndex(moduleText, 0);
+        elm018Problems = ElmMakeReports.parseElm018(ElmMakeReports.elm018Report(problemCount));
+        elm019Problems = ElmMakeReports.parseElm019(ElmMakeReports.elm019Report(problemCount));
+    }
+
+    @Benchmark
+    public LineIndex createLineIndex() {
+        return new LineIndex(moduleText, 0);
+    }
+
+    @Benchmark
+    public void findAnnotationLocation(Blackhole blackhole) {
+        for (Problems problem : elm019Problems) {
+            Optional<TextRange> location = ElmMakeExternalAnnotator.findAnnotationLocation(lineIndex, problem);
+            blackhole.consume(location);
+        }
+    }
+
+    @Benchmark
+    public void createHtmlToolTipElm018(Blackhole blackhole) {
+        for (Problems problem : elm018Problems) {
+            blackhole.consume(ElmMakeToolTip.createHtmlToolTip(problem));
+        }
+    }
+
+    @Benchmark
+    public void createHtmlToolTipElm019(Blackhole blackhole) {
+        for (Problems problem : elm019Problems) {
+            blackhole.consume(ElmMakeToolTip.createHtmlToolTip(problem));
+        }
+    }
+}
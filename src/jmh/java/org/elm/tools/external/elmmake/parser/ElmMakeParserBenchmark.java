@@ -0,0 +1,55 @@
+package org.elm.tools.external.elmmake.parser;
+
+import org.elm.tools.external.elmmake.model.Problems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing the JSON reports of elm make, collecting all problems and streamed problem by problem. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ElmMakeParserBenchmark {
+    @Param({"100", "1000", "5000"})
+    public int problemCount;
+
+    private String elm018Report;
+    private String elm019Report;
+
+    @Setup
+    public void setUp() {
+        elm018Report = ElmMakeReports.elm018Report(problemCount);
+        elm019Report = ElmMakeReports.elm019Report(problemCount);
+    }
+
+    @Benchmark
+    public List<Problems> parseElm018() throws IOException {
+        return ElmMakeReports.parseElm018(elm018Report);
+    }
+
+    @Benchmark
+    public void parseElm018Streaming(Blackhole blackhole) throws IOException {
+        Elm018Parser.parseProblemJsonElm018(new StringReader(elm018Report), blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Problems> parseElm019() throws IOException {
+        return ElmMakeReports.parseElm019(elm019Report);
+    }
+
+    @Benchmark
+    public void parseElm019Streaming(Blackhole blackhole) throws IOException {
+        Elm019Parser.parseCompileErrors(new StringReader(elm019Report), blackhole::consume);
+    }
+}
@@ -0,0 +1,170 @@
+package org.elm.tools.external.elmmake.parser;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+
+import org.elm.tools.external.elmmake.model.CompileError;
+import org.elm.tools.external.elmmake.model.CompileErrors;
+import org.elm.tools.external.elmmake.model.CompileProblem;
+import org.elm.tools.external.elmmake.model.MessageSegment;
+import org.elm.tools.external.elmmake.model.Position;
+import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.elmmake.model.Region;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic elm make reports of the size of a large project: problems spread over modules of
+ * {@link #LINES_PER_MODULE} lines, each with a message of the length and styling Elm 0.19 produces for a
+ * type mismatch.
+ */
+public class ElmMakeReports {
+    public static final int LINES_PER_MODULE = 3000;
+    private static final int PROBLEMS_PER_MODULE = 50;
+    private static final String[] COLORS = {"red", "yellow", "green", "cyan", null};
+
+    /** Writes unstyled segments as plain strings and styled ones as objects, like elm make does. */
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(MessageSegment.class, (JsonSerializer<MessageSegment>) (segment, type, context) -> {
+                if (!segment.bold && !segment.underline && segment.color == null) {
+                    return new JsonPrimitive(segment.string);
+                }
+                JsonObject object = new JsonObject();
+                object.addProperty("bold", segment.bold);
+                object.addProperty("underline", segment.underline);
+                object.addProperty("color", segment.color);
+                object.addProperty("string", segment.string);
+                return object;
+            })
+            .create();
+
+    private ElmMakeReports() {
+        // static class
+    }
+
+    /** The JSON array Elm 0.18 prints for {@code --report=json}. */
+    public static String elm018Report(int problemCount) {
+        List<Problems> problems = new ArrayList<>();
+        for (int i = 0; i < problemCount; i++) {
+            Problems problem = new Problems();
+            problem.tag = "TYPE MISMATCH";
+            problem.overview = "The argument to function `viewItem` is causing a mismatch.";
+            problem.details = plainText(message(i));
+            problem.region = region(i);
+            problem.subregion = i % 3 == 0 ? region(i + 1) : null;
+            problem.type = i % 10 == 0 ? "warning" : "error";
+            problem.file = modulePath(i);
+            problems.add(problem);
+        }
+        return GSON.toJson(problems);
+    }
+
+    /** The compile-errors object Elm 0.19 prints for {@code --report=json}. */
+    public static String elm019Report(int problemCount) {
+        CompileErrors report = new CompileErrors();
+        report.type = "compile-errors";
+        report.errors = new ArrayList<>();
+        CompileError error = null;
+        for (int i = 0; i < problemCount; i++) {
+            if (i % PROBLEMS_PER_MODULE == 0) {
+                error = new CompileError();
+                error.path = modulePath(i);
+                error.name = "Page.Module" + i / PROBLEMS_PER_MODULE;
+                error.problems = new ArrayList<>();
+                report.errors.add(error);
+            }
+            CompileProblem problem = new CompileProblem();
+            problem.title = "TYPE MISMATCH";
+            problem.region = region(i);
+            problem.message = message(i);
+            error.problems.add(problem);
+        }
+        return GSON.toJson(report);
+    }
+
+    /** Collects the problems of an Elm 0.18 report with the streaming parser. */
+    public static List<Problems> parseElm018(String report) throws IOException {
+        List<Problems> problems = new ArrayList<>();
+        Elm018Parser.parseProblemJsonElm018(new StringReader(report), problems::add);
+        return problems;
+    }
+
+    /** Collects the problems of an Elm 0.19 report with the streaming parser. */
+    public static List<Problems> parseElm019(String report) throws IOException {
+        List<Problems> problems = new ArrayList<>();
+        Elm019Parser.parseCompileErrors(new StringReader(report), problems::add);
+        return problems;
+    }
+
+    /** The text of a module the problems of the reports point into. */
+    public static String moduleText() {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < LINES_PER_MODULE; line++) {
+            text.append("    , viewItem model.items").append(line).append(" (Just \"item\") |> Html.map Msg\n");
+        }
+        return text.toString();
+    }
+
+    private static String modulePath(int problem) {
+        return "src/Page/Module" + problem / PROBLEMS_PER_MODULE + ".elm";
+    }
+
+    private static Region region(int problem) {
+        int line = 1 + problem % PROBLEMS_PER_MODULE * (LINES_PER_MODULE / PROBLEMS_PER_MODULE);
+        Region region = new Region();
+        region.start = position(line, 7);
+        region.end = position(problem % 4 == 0 ? line + 2 : line, 30);
+        return region;
+    }
+
+    private static Position position(int line, int column) {
+        Position position = new Position();
+        position.line = line;
+        position.column = column;
+        return position;
+    }
+
+    private static List<MessageSegment> message(int problem) {
+        List<MessageSegment> message = new ArrayList<>();
+        message.add(segment("The 1st argument to `viewItem` is not what I expect:\n\n", false, false, null));
+        for (int line = 0; line < 8; line++) {
+            message.add(segment((problem + line) + "| ", false, false, null));
+            message.add(segment("viewItem model.items" + line + " <Just \"item\"> & more\n", false, false, null));
+            message.add(segment("                     ^^^^^^^^^^^^^", false, false, "red"));
+            message.add(segment("\n", false, false, null));
+        }
+        message.add(segment("\nThis argument is a value of type:\n\n    ", false, false, null));
+        for (int i = 0; i < 12; i++) {
+            message.add(segment("Dict String (List Item" + i + ")", i % 2 == 0, i % 3 == 0, COLORS[i % COLORS.length]));
+            message.add(segment(" -> ", false, false, null));
+        }
+        message.add(segment("\n\n", false, false, null));
+        message.add(segment("Hint", false, true, null));
+        message.add(segment(": I always figure out the argument types from left to right. Read "
+                + "<https://elm-lang.org/0.19.0/type-annotations> to learn more.", false, false, null));
+        return message;
+    }
+
+    private static MessageSegment segment(String string, boolean bold, boolean underline, String color) {
+        MessageSegment segment = new MessageSegment();
+        segment.string = string;
+        segment.bold = bold;
+        segment.underline = underline;
+        segment.color = color;
+        return segment;
+    }
+
+    private static String plainText(List<MessageSegment> message) {
+        StringBuilder text = new StringBuilder();
+        for (MessageSegment segment : message) {
+            text.append(segment.string);
+        }
+        return text.toString();
+    }
+}
@@ -2,9 +2,12 @@ package org.elm.tools.external;
 
 import com.intellij.AppTopics;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.util.messages.MessageBus;
 import com.intellij.util.messages.MessageBusConnection;
 
+import org.elm.tools.external.elmmake.ElmShadowSourceTree;
 import org.jetbrains.annotations.NotNull;
 
 
@@ -15,9 +18,13 @@ public class ElmExternalToolsComponent {
         MessageBus bus = ApplicationManager.getApplication().getMessageBus();
         MessageBusConnection connection = bus.connect();
         connection.subscribe(AppTopics.FILE_DOCUMENT_SYNC, new ElmExternalToolsFileDocumentManager());
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new ElmExternalToolsFileChangeListener());
+        EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new ElmExternalToolsDocumentListener());
+        ElmShadowSourceTree.deleteStale();
     }
 
     public void disposeComponent() {
+        ElmShadowSourceTree.deleteAll();
     }
 
     @NotNull
@@ -0,0 +1,19 @@
+package org.elm.tools.external;
+
+import com.intellij.openapi.editor.event.DocumentAdapter;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import org.elm.tools.external.elmmake.ElmMakeDiagnostics;
+
+/** Outdates the problems of unsaved changes when an Elm document is edited. */
+public class ElmExternalToolsDocumentListener extends DocumentAdapter {
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        VirtualFile file = FileDocumentManager.getInstance().getFile(event.getDocument());
+        if (file != null && file.getName().endsWith(".elm") && file.getCanonicalPath() != null) {
+            ElmMakeDiagnostics.getInstance().documentChanged(file.getCanonicalPath());
+        }
+    }
+}
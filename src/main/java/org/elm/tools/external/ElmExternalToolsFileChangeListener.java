@@ -0,0 +1,107 @@
+package org.elm.tools.external;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.PathUtil;
+
+import org.elm.tools.external.elmmake.ElmMakeDiagnostics;
+import org.elm.tools.external.elmmake.ElmProjectRoots;
+import org.elm.tools.external.elmmake.ElmVersion;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public class ElmExternalToolsFileChangeListener implements BulkFileListener {
+    @Override
+    public void before(@NotNull List<? extends VFileEvent> events) {
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        ElmMakeDiagnostics diagnostics = ElmMakeDiagnostics.getInstance();
+        ElmProjectRoots projectRoots = ElmProjectRoots.getInstance();
+        for (VFileEvent event : events) {
+            if (isBuildOutput(event.getPath())) {
+                continue;
+            }
+            if (isElmFile(event.getPath()) || isManifest(event.getPath()) || isDirectory(event)) {
+                diagnostics.sourceChanged(getCanonicalPath(event.getFile(), event.getPath()));
+            }
+            if (event instanceof VFileMoveEvent) {
+                VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+                diagnostics.sourceChanged(getCanonicalPath(moveEvent.getOldParent()) + "/" + moveEvent.getFile().getName());
+            }
+            invalidateProjectRoots(projectRoots, event);
+        }
+    }
+
+    private void invalidateProjectRoots(ElmProjectRoots projectRoots, VFileEvent event) {
+        if (event instanceof VFileContentChangeEvent) {
+            // The source directories of the root may have changed
+            if (isManifest(event.getPath())) {
+                projectRoots.invalidate(PathUtil.getParentPath(event.getPath()));
+            }
+            return;
+        }
+        VirtualFile file = event.getFile();
+        if (isDirectory(event)) {
+            projectRoots.invalidate(event.getPath());
+        } else if (isManifest(event.getPath())) {
+            projectRoots.invalidate(PathUtil.getParentPath(event.getPath()));
+        }
+
+        if (event instanceof VFileMoveEvent) {
+            VFileMoveEvent moveEvent = (VFileMoveEvent) event;
+            projectRoots.invalidate(moveEvent.getOldParent().getPath());
+        } else if (event instanceof VFilePropertyChangeEvent && file != null && file.getParent() != null) {
+            VFilePropertyChangeEvent propertyChangeEvent = (VFilePropertyChangeEvent) event;
+            if (VirtualFile.PROP_NAME.equals(propertyChangeEvent.getPropertyName())
+                    && (file.isDirectory() || ElmVersion.isManifestFileName(String.valueOf(propertyChangeEvent.getOldValue())))) {
+                projectRoots.invalidate(file.getParent().getPath());
+            }
+        }
+    }
+
+    /**
+     * The paths of the project roots are canonical, so a change below a symbolic link has to be reported by its
+     * canonical path as well. A deleted file is resolved through its parent directory, which still exists.
+     */
+    private static String getCanonicalPath(VirtualFile file, String path) {
+        if (file == null) {
+            return path;
+        }
+        if (file.isValid()) {
+            return getCanonicalPath(file);
+        }
+        VirtualFile parent = file.getParent();
+        return parent != null && parent.isValid() ? getCanonicalPath(parent) + "/" + file.getName() : path;
+    }
+
+    private static String getCanonicalPath(VirtualFile file) {
+        String canonicalPath = file.getCanonicalPath();
+        return canonicalPath != null ? canonicalPath : file.getPath();
+    }
+
+    /** Moving, renaming or deleting a directory affects all Elm files inside it. */
+    private boolean isDirectory(VFileEvent event) {
+        VirtualFile file = event.getFile();
+        return file != null && file.isDirectory();
+    }
+
+    private boolean isBuildOutput(String path) {
+        return path.contains("/elm-stuff/") || path.endsWith("/elm-stuff");
+    }
+
+    /** A changed manifest may add dependencies or source directories, which changes the result of elm make. */
+    private boolean isManifest(String path) {
+        return ElmVersion.isManifestFileName(PathUtil.getFileName(path));
+    }
+
+    private boolean isElmFile(String path) {
+        return path.endsWith(".elm");
+    }
+}
@@ -1,27 +1,116 @@
 package org.elm.tools.external;
 
 import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileDocumentManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
-import com.intellij.psi.PsiDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Alarm;
 
+import org.elm.tools.external.elmmake.ElmProjectRoot;
+import org.elm.tools.external.elmmake.ElmProjectRoots;
+import org.elm.tools.external.settings.ElmPluginSettings;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
 import static org.elm.tools.external.utils.PsiFiles.isPsiFileInProject;
 
+/**
+ * Highlights the open Elm files again after they are saved. Saves are collected for a short while, so "Save All"
+ * over many modules restarts the open editors of each affected Elm project root once, after all files are
+ * written, and their annotators share a single elm make run. A root is affected when a saved file lies in one
+ * of its source directories, which includes shared modules outside the root.
+ */
 public class ElmExternalToolsFileDocumentManager extends FileDocumentManagerAdapter {
+    private static final int SAVE_BATCH_MILLIS = 200;
+
+    private final Alarm alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, ApplicationManager.getApplication());
+    private final Set<VirtualFile> savedFiles = new LinkedHashSet<>();
+
     @Override
     public void beforeDocumentSaving(@NotNull Document document) {
         super.beforeDocumentSaving(document);
+        VirtualFile file = FileDocumentManager.getInstance().getFile(document);
+        if (file != null && file.getName().endsWith(".elm")) {
+            savedFiles.add(file);
+            alarm.cancelAllRequests();
+            alarm.addRequest(this::restartSavedRoots, SAVE_BATCH_MILLIS);
+        }
+    }
+
+    private void restartSavedRoots() {
+        List<String> savedPaths = new ArrayList<>();
+        for (VirtualFile file : savedFiles) {
+            if (file.isValid() && file.getCanonicalPath() != null) {
+                savedPaths.add(file.getCanonicalPath());
+            }
+        }
+        savedFiles.clear();
+        if (savedPaths.isEmpty()) {
+            return;
+        }
+
+        Map<String, Boolean> affectedRoots = new HashMap<>();
         for (Project project : ProjectManager.getInstance().getOpenProjects()) {
-            PsiFile psiFile = PsiDocumentManager.getInstance(project).getPsiFile(document);
+            if (!isProjectEligible(project)) {
+                continue;
+            }
+            for (PsiFile psiFile : findOpenFiles(project, savedPaths, affectedRoots)) {
+                DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+            }
+        }
+    }
+
+    private List<PsiFile> findOpenFiles(Project project, List<String> savedPaths, Map<String, Boolean> affectedRoots) {
+        List<PsiFile> openFiles = new ArrayList<>();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            if (!file.isValid() || !file.getName().endsWith(".elm") || !isInAffectedRoot(file, savedPaths, affectedRoots)) {
+                continue;
+            }
+            PsiFile psiFile = psiManager.findFile(file);
             if (isPsiFileEligible(project, psiFile)) {
-                processPsiFile(project, psiFile);
+                openFiles.add(psiFile);
             }
         }
+        return openFiles;
+    }
+
+    private boolean isInAffectedRoot(VirtualFile file, List<String> savedPaths, Map<String, Boolean> affectedRoots) {
+        Optional<ElmProjectRoot> root = ElmProjectRoots.getInstance().findRoot(file);
+        return root.isPresent() && affectedRoots.computeIfAbsent(root.get().getPath(), path -> containsAny(root.get(), savedPaths));
+    }
+
+    private boolean containsAny(ElmProjectRoot root, List<String> paths) {
+        for (String path : paths) {
+            if (root.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * When unsaved changes are compiled, saving does not change what elm make sees, so there is no need to
+     * highlight again.
+     */
+    private boolean isProjectEligible(Project project) {
+        return project.isInitialized() &&
+                !project.isDisposed() &&
+                !ElmPluginSettings.getInstance(project).isCompileUnsavedChanges();
     }
 
     /**
@@ -31,15 +120,7 @@ public class ElmExternalToolsFileDocumentManager extends FileDocumentManagerAdap
      */
     private boolean isPsiFileEligible(Project project, PsiFile psiFile) {
         return psiFile != null &&
-                project.isInitialized() &&
-                !project.isDisposed() &&
                 isPsiFileInProject(project, psiFile) &&
                 psiFile.getModificationStamp() != 0;
     }
-
-    private void processPsiFile(Project project, PsiFile psiFile) {
-        if (psiFile.getName().endsWith(".elm")) {
-            DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
-        }
-    }
 }
@@ -0,0 +1,24 @@
+package org.elm.tools.external.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+
+import org.elm.tools.external.settings.ElmPluginSettings;
+
+public class ElmMakeAllAction extends AnAction {
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        Project project = event.getProject();
+        if (project != null) {
+            ProgressManager.getInstance().run(new ElmMakeAllTask(project));
+        }
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        Project project = event.getProject();
+        event.getPresentation().setEnabled(project != null && !project.isDefault() && ElmPluginSettings.getInstance(project).isPluginEnabled());
+    }
+}
@@ -0,0 +1,228 @@
+package org.elm.tools.external.action;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.ide.errorTreeView.NewErrorTreeViewPanel;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowId;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.problems.Problem;
+import com.intellij.problems.WolfTheProblemSolver;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManager;
+import com.intellij.ui.content.MessageView;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.MessageCategory;
+
+import org.elm.tools.external.ElmExternalToolsComponent;
+import org.elm.tools.external.elmmake.ElmMake;
+import org.elm.tools.external.elmmake.ElmMakeScheduler;
+import org.elm.tools.external.elmmake.ElmManifest;
+import org.elm.tools.external.elmmake.ElmProjectRoot;
+import org.elm.tools.external.elmmake.ElmProjectRoots;
+import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.settings.ElmPluginSettings;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles all sources of all Elm project roots of a project. Each compile goes through the
+ * {@link ElmMakeScheduler}, so it waits for a highlighting compile of the same root and counts towards the
+ * cap on compiler processes. Problems are shown in the Messages tool window as soon as they are parsed, and
+ * files with errors are reported to the {@link WolfTheProblemSolver} so they are marked in the project view.
+ */
+public class ElmMakeAllTask extends Task.Backgroundable {
+    private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+    private static final String TITLE = "Elm Make All";
+    /** Characters of file arguments per elm make run, well below the limit of 32K for a command line on Windows. */
+    private static final int MAX_FILES_LENGTH = 24000;
+
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<Problems>> errorsByFile = new ConcurrentHashMap<>();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final AtomicInteger warningCount = new AtomicInteger();
+    private final List<String> compiledFiles = Collections.synchronizedList(new ArrayList<>());
+
+    public ElmMakeAllTask(@NotNull Project project) {
+        super(project, TITLE, true);
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        Project project = getProject();
+        ElmPluginSettings settings = ElmPluginSettings.getInstance(project);
+
+        indicator.setText("Finding Elm projects");
+        List<ElmProjectRoot> roots = ElmProjectRoots.getInstance().findAllRoots(project);
+        if (roots.isEmpty()) {
+            return;
+        }
+
+        NewErrorTreeViewPanel errorView = openErrorView(project);
+        int poolSize = Math.min(roots.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = AppExecutorUtil.createBoundedApplicationPoolExecutor(TITLE, poolSize);
+        Map<ElmProjectRoot, Future<?>> jobs = new HashMap<>();
+        for (ElmProjectRoot root : roots) {
+            jobs.put(root, pool.submit(() -> make(root, settings, errorView, indicator)));
+        }
+        try {
+            waitForJobs(indicator, jobs);
+        } catch (ProcessCanceledException e) {
+            jobs.values().forEach(job -> job.cancel(true));
+            processes.forEach(Process::destroy);
+            throw e;
+        }
+
+        ApplicationManager.getApplication().invokeLater(() -> reportToProblemSolver(project), project.getDisposed());
+        LOG.info(TITLE + ": " + errorCount.get() + " errors and " + warningCount.get() + " warnings in " + roots.size() + " Elm projects");
+    }
+
+    private void waitForJobs(ProgressIndicator indicator, Map<ElmProjectRoot, Future<?>> jobs) {
+        int done = 0;
+        for (Map.Entry<ElmProjectRoot, Future<?>> job : jobs.entrySet()) {
+            indicator.setText("Compiling Elm projects (" + done + "/" + jobs.size() + ")");
+            indicator.setText2(job.getKey().getPath());
+            ElmMakeScheduler.await(job.getValue());
+            done++;
+            indicator.setFraction((double) done / jobs.size());
+        }
+    }
+
+    private void make(ElmProjectRoot root, ElmPluginSettings settings, NewErrorTreeViewPanel errorView, ProgressIndicator indicator) {
+        List<String> files = ElmManifest.findSourceFiles(root).stream().map(File::getPath).collect(Collectors.toList());
+        if (files.isEmpty()) {
+            return;
+        }
+        try {
+            ElmMakeScheduler.getInstance().runExclusively(root, () -> {
+                for (List<String> batch : toBatches(files)) {
+                    if (indicator.isCanceled()) {
+                        return;
+                    }
+                    Process process = ElmMake.start(root.getPath(), settings.getNodeExecutable(), settings.getElmMakeExecutable(), batch);
+                    processes.add(process);
+                    try {
+                        ElmMake.readProblems(process, root.getVersion(), problem -> addProblem(root, problem, errorView), indicator::isCanceled);
+                        compiledFiles.addAll(batch);
+                    } finally {
+                        processes.remove(process);
+                    }
+                }
+            });
+        } catch (ExecutionException e) {
+            LOG.error(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits the files into batches that fit on one command line. A module is compiled once per batch that
+     * imports it, but elm make reuses the build artifacts of the previous batches in elm-stuff.
+     */
+    private static List<List<String>> toBatches(List<String> files) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int length = 0;
+        for (String file : files) {
+            // The file, the quotes around it and the space before it
+            int fileLength = file.length() + 3;
+            if (!batch.isEmpty() && length + fileLength > MAX_FILES_LENGTH) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                length = 0;
+            }
+            batch.add(file);
+            length += fileLength;
+        }
+        batches.add(batch);
+        return batches;
+    }
+
+    private void addProblem(ElmProjectRoot root, Problems problem, NewErrorTreeViewPanel errorView) {
+        boolean warning = "warning".equals(problem.type);
+        (warning ? warningCount : errorCount).incrementAndGet();
+
+        String path = problem.file != null ? root.resolvePath(problem.file) : root.getPath();
+        if (!warning && problem.file != null) {
+            errorsByFile.computeIfAbsent(path, k -> Collections.synchronizedList(new ArrayList<>())).add(problem);
+        }
+
+        String details = problem.getDetails();
+        String[] text = details != null ? new String[]{problem.overview, details} : new String[]{problem.overview};
+        int line = problem.region != null ? problem.region.start.line - 1 : -1;
+        int column = problem.region != null ? problem.region.start.column - 1 : -1;
+        ApplicationManager.getApplication().invokeLater(() -> {
+            VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+            errorView.addMessage(warning ? MessageCategory.WARNING : MessageCategory.ERROR, text, file, line, column, null);
+        }, getProject().getDisposed());
+    }
+
+    private void reportToProblemSolver(Project project) {
+        WolfTheProblemSolver problemSolver = WolfTheProblemSolver.getInstance(project);
+        for (String path : compiledFiles) {
+            VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+            if (file == null) {
+                continue;
+            }
+            List<Problems> errors = errorsByFile.get(path);
+            if (errors == null) {
+                problemSolver.clearProblems(file);
+                continue;
+            }
+            List<Problem> problems = new ArrayList<>();
+            for (Problems error : errors) {
+                int line = error.region != null ? error.region.start.line : 0;
+                int column = error.region != null ? error.region.start.column : 0;
+                problems.add(problemSolver.convertToProblem(file, line, column, new String[]{ error.getDetails() }));
+            }
+            problemSolver.weHaveGotNonIgnorableProblems(file, problems);
+        }
+    }
+
+    private NewErrorTreeViewPanel openErrorView(Project project) {
+        NewErrorTreeViewPanel[] errorView = new NewErrorTreeViewPanel[1];
+        ApplicationManager.getApplication().invokeAndWait(() -> {
+            errorView[0] = new NewErrorTreeViewPanel(project, null);
+            MessageView messageView = MessageView.SERVICE.getInstance(project);
+            messageView.runWhenInitialized(() -> {
+                ContentManager contentManager = messageView.getContentManager();
+                for (Content content : contentManager.getContents()) {
+                    if (TITLE.equals(content.getDisplayName())) {
+                        contentManager.removeContent(content, true);
+                    }
+                }
+                Content content = ContentFactory.SERVICE.getInstance().createContent(errorView[0], TITLE, true);
+                content.setDisposer(errorView[0]);
+                contentManager.addContent(content);
+                contentManager.setSelectedContent(content);
+
+                ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(ToolWindowId.MESSAGES_WINDOW);
+                if (toolWindow != null) {
+                    toolWindow.activate(null, false);
+                }
+            });
+        });
+        return errorView[0];
+    }
+}
@@ -0,0 +1,15 @@
+package org.elm.tools.external.action;
+
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+
+import org.elm.tools.external.elmmake.ElmMakeMetrics;
+import org.elm.tools.external.utils.NotificationUtil;
+
+public class ElmMakeStatisticsAction extends AnAction {
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        NotificationUtil.showNotification("Elm make statistics", ElmMakeMetrics.getInstance().getSummary(), NotificationType.INFORMATION);
+    }
+}
@@ -4,20 +4,21 @@ import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.lang.annotation.Annotation;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.ExternalAnnotator;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.problems.Problem;
 import com.intellij.problems.WolfTheProblemSolver;
-import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 
 import org.elm.tools.external.ElmExternalToolsComponent;
-import org.elm.tools.external.elmmake.ElmMake;
+import org.elm.tools.external.elmmake.ElmMakeDiagnostics;
+import org.elm.tools.external.elmmake.ElmMakeMetrics;
+import org.elm.tools.external.elmmake.ElmProjectRoot;
+import org.elm.tools.external.elmmake.ElmProjectRoots;
 import org.elm.tools.external.elmmake.model.Problems;
 import org.elm.tools.external.elmmake.model.Region;
 import org.elm.tools.external.settings.ElmPluginSettings;
@@ -27,10 +28,10 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class ElmMakeExternalAnnotator extends ExternalAnnotator<AnnotatorFile, List<Problems>> {
     private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+    private static final Key<LineIndex> LINE_INDEX = Key.create("org.elm.tools.external.lineIndex");
 
     @Nullable
     @Override
@@ -68,63 +69,50 @@ public class ElmMakeExternalAnnotator extends ExternalAnnotator<AnnotatorFile, L
             return Collections.emptyList();
         }
 
-        final Optional<String> basePath = findElmPackageDirectory(file);
+        final Optional<ElmProjectRoot> root = ElmProjectRoots.getInstance().findRoot(file.getVirtualFile());
 
-        if (!basePath.isPresent()) {
+        if (!root.isPresent()) {
             return Collections.emptyList();
         }
 
         String canonicalPath = file.getVirtualFile().getCanonicalPath();
 
-        List<Problems> problems = ElmMake.execute(basePath.get(), elmPluginSettings.getNodeExecutable(), elmPluginSettings.getElmMakeExecutable(), canonicalPath);
-
-        final List<Problems> problemsForThisFile = problems
-                .stream()
-                .filter(res -> isIssueForCurrentFile(basePath.get(), canonicalPath, res))
-                .collect(Collectors.toList());
+        final List<Problems> problemsForThisFile = ElmMakeDiagnostics.getInstance().getProblems(file.getProject(), root.get(), canonicalPath);
 
         LOG.debug(problemsForThisFile.size() + " problems for file " + canonicalPath);
         return problemsForThisFile;
     }
 
-    private Optional<String> findElmPackageDirectory(PsiFile file) {
-        final PsiDirectory[] parent = new PsiDirectory[1];
-        ApplicationManager.getApplication().runReadAction(() -> {
-            parent[0] = file.getParent();
-            while (parent[0] != null && parent[0].isValid() && parent[0].findFile("elm-package.json") == null && parent[0].findFile("elm.json") == null) {
-                parent[0] = parent[0].getParent();
-            }
-
-        });
-
-        if (parent[0] == null) {
-            return Optional.empty();
-        } else {
-            return Optional.ofNullable(parent[0].getVirtualFile().getCanonicalPath());
-        }
-    }
-
-    private boolean isIssueForCurrentFile(String basePath, String canonicalPath, Problems res) {
-        if (res.file == null) {
-            return true;
-        }
-        return res.file.replace("./", basePath + "/").equals(canonicalPath);
-    }
-
     /** Called 3rd to actually annotate the editor window */
     @Override
     public void apply(@NotNull PsiFile file,
                       List<Problems> issues,
                       @NotNull AnnotationHolder holder) {
         Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+        if (document == null) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        LineIndex lineIndex = getLineIndex(document);
 
         for (Problems issue : issues) {
-            annotateForIssue(holder, document, issue, file);
+            annotateForIssue(holder, lineIndex, issue, file);
+        }
+        ElmMakeMetrics.getInstance().recordApply(System.nanoTime() - startTime, issues.size());
+    }
+
+    @NotNull
+    private LineIndex getLineIndex(Document document) {
+        LineIndex lineIndex = document.getUserData(LINE_INDEX);
+        if (lineIndex == null || lineIndex.getModificationStamp() != document.getModificationStamp()) {
+            lineIndex = new LineIndex(document.getImmutableCharSequence(), document.getModificationStamp());
+            document.putUserData(LINE_INDEX, lineIndex);
         }
+        return lineIndex;
     }
 
-    private void annotateForIssue(@NotNull AnnotationHolder holder, Document document, Problems issue, PsiFile file) {
-        Optional<TextRange> optionalSelector = findAnnotationLocation(document, issue);
+    private void annotateForIssue(@NotNull AnnotationHolder holder, LineIndex lineIndex, Problems issue, PsiFile file) {
+        Optional<TextRange> optionalSelector = findAnnotationLocation(lineIndex, issue);
         if (!optionalSelector.isPresent()) {
             return;
         }
@@ -143,35 +131,34 @@ public class ElmMakeExternalAnnotator extends ExternalAnnotator<AnnotatorFile, L
             annotation = holder.createErrorAnnotation(selector, issue.overview);
 
             WolfTheProblemSolver theProblemSolver = WolfTheProblemSolver.getInstance(file.getProject());
-            final Problem problem = theProblemSolver.convertToProblem(file.getVirtualFile(), issue.region.start.line, issue.region.start.column, new String[]{ issue.details });
+            final Problem problem = theProblemSolver.convertToProblem(file.getVirtualFile(), issue.region.start.line, issue.region.start.column, new String[]{ issue.getDetails() });
             theProblemSolver.weHaveGotNonIgnorableProblems(file.getVirtualFile(), Collections.singletonList(problem));
         }
 
-        String tooltip = createHtmlToolTip(issue);
-        annotation.setTooltip(tooltip);
+        annotation.setTooltip(ElmMakeToolTip.getHtmlToolTip(issue));
     }
 
     @NotNull
-    private Optional<TextRange> findAnnotationLocation(Document document, Problems issue) {
+    static Optional<TextRange> findAnnotationLocation(LineIndex lineIndex, Problems issue) {
         Region region = issue.subregion != null ? issue.subregion : issue.region;
         if (region == null) {
             return Optional.empty();
         }
 
-        int offsetStart = StringUtil.lineColToOffset(document.getText(), region.start.line - 1, region.start.column - 1);
-        int offsetEnd = StringUtil.lineColToOffset(document.getText(), region.end.line - 1, region.end.column - 1);
+        int offsetStart = lineIndex.lineColToOffset(region.start.line - 1, region.start.column - 1);
+        int offsetEnd = lineIndex.lineColToOffset(region.end.line - 1, region.end.column - 1);
 
         if (offsetStart == -1 && offsetEnd == -1) {
             return Optional.empty();
         }
 
         if (isMultiLineRegion(region)) {
-            offsetEnd = document.getLineEndOffset(region.start.line - 1);
+            offsetEnd = lineIndex.getLineEndOffset(region.start.line - 1);
         }
         return Optional.of(new TextRange(offsetStart, offsetEnd));
     }
 
-    private boolean isMultiLineRegion(Region region) {
+    private static boolean isMultiLineRegion(Region region) {
         return region.start.line != region.end.line;
     }
 
@@ -179,19 +166,4 @@ public class ElmMakeExternalAnnotator extends ExternalAnnotator<AnnotatorFile, L
         return file != null && file.getVirtualFile() != null && file.getVirtualFile().isValid();
     }
 
-    @NotNull
-    private String createHtmlToolTip(Problems issue) {
-        StringBuilder tooltip = new StringBuilder("<html><strong>" + issue.overview + "</strong><br/><hr/>");
-        tooltip.append("<tt>");
-        String[] lines = issue.details.split("\\n");
-        for (String line : lines) {
-            tooltip.append(line.replaceAll(" ", "&nbsp;"));
-            tooltip.append("<br/>");
-        }
-        tooltip.append("</tt>");
-        tooltip.append("</html>");
-        return tooltip.toString();
-    }
-
 }
-
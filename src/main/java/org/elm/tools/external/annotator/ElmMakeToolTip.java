@@ -0,0 +1,39 @@
+package org.elm.tools.external.annotator;
+
+import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.utils.MessageHtml;
+
+public class ElmMakeToolTip {
+    private ElmMakeToolTip() {
+        // static class
+    }
+
+    /**
+     * Returns the tooltip of the problem. It is rendered from the raw message the first time the problem
+     * gets annotated and reused while the problem stays in the diagnostics of its project root.
+     */
+    public static String getHtmlToolTip(Problems issue) {
+        String tooltip = issue.getHtmlToolTip();
+        if (tooltip == null) {
+            tooltip = createHtmlToolTip(issue);
+            issue.setHtmlToolTip(tooltip);
+        }
+        return tooltip;
+    }
+
+    public static String createHtmlToolTip(Problems issue) {
+        StringBuilder tooltip = new StringBuilder("<html><strong>");
+        MessageHtml.appendText(tooltip, issue.overview);
+        tooltip.append("</strong><br/><hr/>");
+        tooltip.append("<tt>");
+        if (issue.message != null) {
+            MessageHtml.appendSegments(tooltip, issue.message);
+        } else {
+            MessageHtml.appendText(tooltip, issue.details);
+        }
+        tooltip.append("<br/>");
+        tooltip.append("</tt>");
+        tooltip.append("</html>");
+        return tooltip.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package org.elm.tools.external.annotator;
+
+import java.util.Arrays;
+
+/**
+ * The start offsets of all lines of a document revision. Built once per revision, so converting the
+ * regions of many problems to offsets does not scan the text for every problem.
+ */
+public class LineIndex {
+    private final long modificationStamp;
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int textLength;
+
+    public LineIndex(CharSequence text, long modificationStamp) {
+        this.modificationStamp = modificationStamp;
+        this.textLength = text.length();
+
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < textLength; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        this.lineStarts = starts;
+        this.lineCount = count;
+    }
+
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    /** Returns the offset of the zero-based line and column, or -1 if the line is not in the text. */
+    public int lineColToOffset(int line, int column) {
+        if (line < 0 || line >= lineCount) {
+            return -1;
+        }
+        return Math.min(lineStarts[line] + Math.max(column, 0), getLineEndOffset(line));
+    }
+
+    /** Returns the offset of the end of the zero-based line, excluding the line break. */
+    public int getLineEndOffset(int line) {
+        return line + 1 < lineCount ? lineStarts[line + 1] - 1 : textLength;
+    }
+}
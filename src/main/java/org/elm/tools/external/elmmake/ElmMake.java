@@ -1,9 +1,10 @@
 package org.elm.tools.external.elmmake;
 
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
 import com.intellij.execution.process.ProcessNotCreatedException;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 
 import org.elm.tools.external.ElmExternalToolsComponent;
@@ -20,8 +21,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public class ElmMake {
     private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
@@ -30,70 +37,119 @@ public class ElmMake {
         // Private constructor to hide the implicit public one
     }
 
-    public static List<Problems> execute(String workDirectory, String nodePath, String elmMakeExePath, String file) {
+    /** Starts elm make without waiting for it, so the caller is able to destroy the process when it is no longer needed. */
+    public static Process start(String workDirectory, String nodePath, String elmMakeExePath, Collection<String> files) throws ExecutionException {
         GeneralCommandLine commandLine = createGeneralCommandLine(nodePath, elmMakeExePath);
         commandLine.setWorkDirectory(workDirectory);
         commandLine.addParameter("make");
         commandLine.addParameter("--report=json");
         commandLine.addParameter("--output=/dev/null");
-        commandLine.addParameter(file);
+        commandLine.addParameters(new ArrayList<>(files));
 
-        try {
-            LOG.info(workDirectory + ": " + commandLine.getCommandLineString(elmMakeExePath));
+        LOG.info(workDirectory + ": " + commandLine.getCommandLineString(elmMakeExePath));
+        return commandLine.createProcess();
+    }
 
-            Process process = commandLine.createProcess();
+    /**
+     * Reads the output and error streams of a process created by {@link #start} while it is still running and
+     * passes each problem to the consumer as soon as it is parsed. Draining both streams at the same time keeps
+     * elm make from blocking on a full pipe. The version of the project root decides which stream holds the
+     * report; when it is null the report format is detected from the output. The consumer is called from two
+     * threads. When the caller destroyed the process, the report is cut off, so parse errors and error output
+     * are ignored instead of reported. Returns the CPU time spent reading and parsing the report in nanoseconds;
+     * it overlaps with the compile, so it is measured per reader thread instead of as a separate phase.
+     */
+    public static long readProblems(Process process, ElmVersion version, Consumer<Problems> consumer, BooleanSupplier destroyed) throws InterruptedException {
+        AtomicLong parseTime = new AtomicLong();
+        StringBuilder errorOutput = new StringBuilder();
+        Future<?> errorStreamReader = ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            long cpuTime = ElmMakeMetrics.currentThreadCpuTime();
+            parseErrorStream(process.getErrorStream(), version, consumer, errorOutput, destroyed);
+            parseTime.addAndGet(ElmMakeMetrics.currentThreadCpuTime() - cpuTime);
+        });
+        long cpuTime = ElmMakeMetrics.currentThreadCpuTime();
+        boolean hasOutput = parseOutputStream(process.getInputStream(), version, consumer, destroyed);
+        parseTime.addAndGet(ElmMakeMetrics.currentThreadCpuTime() - cpuTime);
 
-            process.waitFor();
-            LOG.debug("Elm exit value: " + process.exitValue());
-            return parseElmMakeOutput(process.getInputStream(), process.getErrorStream());
-
-        } catch (ExecutionException | InterruptedException e) {
+        try {
+            errorStreamReader.get();
+        } catch (java.util.concurrent.ExecutionException e) {
             LOG.error(e.getMessage(), e);
         }
-        return new ArrayList<>();
+        process.waitFor();
+        LOG.debug("Elm exit value: " + process.exitValue());
+
+        if (!hasOutput && errorOutput.length() > 0 && !destroyed.getAsBoolean()) {
+            NotificationUtil.showNotification("Problem found performing Elm make", errorOutput.toString());
+        }
+        return parseTime.get();
     }
 
-    private static List<Problems> parseElmMakeOutput(InputStream inputStream, InputStream errorStream) {
-        List<Problems> allProblems = new ArrayList<>();
+    /** Elm 0.18 reports the problems of each module as a JSON array on a separate line of the output stream. */
+    private static boolean parseOutputStream(InputStream inputStream, ElmVersion version, Consumer<Problems> consumer, BooleanSupplier destroyed) {
+        boolean hasOutput = false;
         String output = null;
-        try {
-            List<String> lines = readLines(new InputStreamReader(inputStream));
-            if (lines.isEmpty()) {
-                List<String> errorLines = readLines(new InputStreamReader(errorStream));
-                if (notValidJson(errorLines)) {
-                    String errorResult = String.join("\n", errorLines);
-                    if (!errorResult.isEmpty()) {
-                        NotificationUtil.showNotification("Problem found performing Elm make", errorResult);
-                    }
-                } else {
-                    for (String line : errorLines) {
-                        List<Problems> makeResult = Elm019Parser.parseCompileErrors(line);
-                        allProblems.addAll(makeResult);
-                    }
+        try (BufferedReader lineReader = new BufferedReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = lineReader.readLine()) != null) {
+                if (version == ElmVersion.ELM_019) {
+                    continue;
                 }
-
-            }
-            for (String line : lines) {
+                hasOutput = true;
                 if (notValidJsonArray(line)) {
                     continue;
                 }
                 output = line;
-                List<Problems> makeResult = Elm018Parser.parseProblemJsonElm018(output);
-                allProblems.addAll(makeResult);
+                Elm018Parser.parseProblemJsonElm018(new StringReader(line), consumer);
+            }
+        } catch (JsonParseException e) {
+            if (!destroyed.getAsBoolean()) {
+                LOG.error(e.getMessage(), e);
+                LOG.error("Could not convert to JSON: " + output);
             }
-        } catch (JsonSyntaxException e) {
-            LOG.error(e.getMessage(), e);
-            LOG.error("Could not convert to JSON: " + output);
         } catch (IOException e) {
-            LOG.error(e.getMessage(), e);
+            if (!destroyed.getAsBoolean()) {
+                LOG.error(e.getMessage(), e);
+            }
+        }
+        return hasOutput;
+    }
+
+    /**
+     * Elm 0.19 reports all problems as one JSON object on the error stream. Anything else on the error stream
+     * is collected in errorOutput so it can be shown to the user.
+     */
+    private static void parseErrorStream(InputStream errorStream, ElmVersion version, Consumer<Problems> consumer, StringBuilder errorOutput, BooleanSupplier destroyed) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream))) {
+            if (version != ElmVersion.ELM_018 && startsWithJsonObject(reader)) {
+                Elm019Parser.parseCompileErrors(reader, consumer);
+                drain(reader);
+            } else {
+                errorOutput.append(String.join("\n", readLines(reader)));
+            }
+        } catch (JsonParseException | IOException e) {
+            if (!destroyed.getAsBoolean()) {
+                LOG.error(e.getMessage(), e);
+            }
         }
+    }
 
-        return allProblems;
+    private static boolean startsWithJsonObject(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        int first = reader.read();
+        reader.reset();
+        return first == '{';
     }
 
-    private static List<String> readLines(Reader r) throws IOException {
+    private static void drain(Reader reader) throws IOException {
+        char[] buffer = new char[8192];
+        while (reader.read(buffer) != -1) {
+            // Keep reading so the process does not block on a full pipe
+        }
+    }
+
+    private static List<String> readLines(BufferedReader lineReader) throws IOException {
         List<String> result = new ArrayList<>();
-        BufferedReader lineReader = new BufferedReader(r);
 
         String line;
         while ((line = lineReader.readLine()) != null) {
@@ -107,10 +163,6 @@ public class ElmMake {
         return !line.startsWith("[");
     }
 
-    private static boolean notValidJson(List<String> errorLines) {
-        return !(!errorLines.isEmpty() && errorLines.get(0).startsWith("{"));
-    }
-
     public static String getVersion(final String nodePath, String elmMakeExePath) throws ExecutionException, InterruptedException, IOException {
         GeneralCommandLine commandLine = createGeneralCommandLine(nodePath, elmMakeExePath);
         commandLine.addParameter("--version");
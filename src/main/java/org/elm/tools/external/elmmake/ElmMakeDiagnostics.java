@@ -0,0 +1,262 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import org.elm.tools.external.ElmExternalToolsComponent;
+import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.settings.ElmPluginSettings;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the problems of the last elm make run per Elm project root (the directory containing the
+ * elm.json or elm-package.json). All open files of a root share one compile; the result is reused
+ * until an .elm file under that root changes. Compiles are run by the {@link ElmMakeScheduler}.
+ */
+public class ElmMakeDiagnostics {
+    private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+
+    private final ConcurrentMap<String, RootDiagnostics> roots = new ConcurrentHashMap<>();
+
+    public static ElmMakeDiagnostics getInstance() {
+        return ServiceManager.getService(ElmMakeDiagnostics.class);
+    }
+
+    /**
+     * Returns the problems for the given file, running elm make for the whole root only when the
+     * stored result is outdated or does not include the file yet. The first time a root is used, the result
+     * is taken from the disk cache when the sources did not change since it was written. When unsaved
+     * changes are compiled, the root is compiled in its {@link ElmShadowSourceTree} instead.
+     */
+    public List<Problems> getProblems(Project project, ElmProjectRoot root, String file) {
+        RootDiagnostics diagnostics = roots.compute(root.getPath(), (path, existing) ->
+                existing != null && existing.root.getVersion() == root.getVersion() ? existing : new RootDiagnostics(root));
+        return diagnostics.getProblems(ElmMakeDiskCache.getInstance(project), ElmPluginSettings.getInstance(project), file);
+    }
+
+    /**
+     * Marks the stored result of every root containing the given path as outdated. A root also contains the
+     * sources of its source directories outside of it, so a change of a shared module outdates every root
+     * using it.
+     */
+    public void sourceChanged(String path) {
+        ElmMakeDiskCache.sourceChanged(path);
+        for (RootDiagnostics root : roots.values()) {
+            if (path.equals(root.root.getManifestPath())) {
+                root.root.manifestChanged();
+            }
+            if (root.contains(path)) {
+                root.modificationStamp.incrementAndGet();
+            }
+        }
+    }
+
+    /** Marks the stored result of unsaved changes of every root containing the given path as outdated. */
+    public void documentChanged(String path) {
+        for (RootDiagnostics root : roots.values()) {
+            if (root.contains(path)) {
+                root.documentStamp.incrementAndGet();
+            }
+        }
+    }
+
+    private static class RootDiagnostics {
+        private final ElmProjectRoot root;
+        private final AtomicLong modificationStamp = new AtomicLong();
+        private final AtomicLong documentStamp = new AtomicLong();
+        private final Set<String> files = new HashSet<>();
+        private final Object diskCacheLock = new Object();
+        private final AtomicReference<StampedKey> diskCacheKey = new AtomicReference<>();
+        private boolean diskCacheChecked;
+        private Snapshot snapshot;
+
+        RootDiagnostics(ElmProjectRoot root) {
+            this.root = root;
+        }
+
+        boolean contains(String path) {
+            return root.contains(path);
+        }
+
+        List<Problems> getProblems(ElmMakeDiskCache diskCache, ElmPluginSettings settings, String file) {
+            final String nodePath = settings.getNodeExecutable();
+            final String elmMakeExePath = settings.getElmMakeExecutable();
+            final String compiler = nodePath + File.pathSeparator + elmMakeExePath;
+            final boolean unsaved = settings.isCompileUnsavedChanges();
+            final long stamp = unsaved ? modificationStamp.get() + documentStamp.get() : modificationStamp.get();
+            Optional<List<Problems>> storedProblems = getStoredProblems(stamp, unsaved, compiler, file);
+            if (storedProblems.isPresent()) {
+                return storedProblems.get();
+            }
+
+            synchronized (diskCacheLock) {
+                if (!unsaved && !diskCacheChecked) {
+                    diskCacheChecked = true;
+                    diskCache.computeKey(root, nodePath, elmMakeExePath)
+                             .flatMap(key -> diskCache.load(root, key, stamp))
+                             .ifPresent(result -> updateSnapshot(new Snapshot(root, result, false, compiler)));
+                    storedProblems = getStoredProblems(stamp, false, compiler, file);
+                    if (storedProblems.isPresent()) {
+                        LOG.debug("Using cached problems for " + root.getPath());
+                        return storedProblems.get();
+                    }
+                }
+            }
+
+            final Set<String> requestedFiles;
+            synchronized (this) {
+                files.removeIf(existing -> !new File(existing).isFile());
+                requestedFiles = new HashSet<>(files);
+            }
+
+            // The result is stored by the run itself, so a compile finishing after this highlighting pass was
+            // cancelled is still used by the next one
+            final CompletableFuture<Snapshot> stored;
+            if (unsaved) {
+                ElmShadowSourceTree shadowSourceTree = ElmShadowSourceTree.forRoot(root);
+                Set<String> shadowFiles = requestedFiles.stream().map(shadowSourceTree::toShadowPath).collect(Collectors.toSet());
+                stored = ElmMakeScheduler.getInstance()
+                        .schedule(shadowSourceTree.getShadowRoot(), nodePath, elmMakeExePath, shadowFiles, stamp, shadowSourceTree::sync)
+                        .thenApply(shadowSourceTree::toRealResult)
+                        .thenApply(result -> storeResult(result, true, compiler));
+            } else {
+                CompletableFuture<ElmMakeResult> run = ElmMakeScheduler.getInstance().schedule(root, nodePath, elmMakeExePath,
+                        requestedFiles, stamp, () -> prepareDiskCacheKey(diskCache, nodePath, elmMakeExePath, stamp));
+                stored = run.thenApply(result -> storeResult(result, false, compiler));
+                run.thenAcceptAsync(result -> saveToDiskCache(diskCache, result), AppExecutorUtil.getAppExecutorService());
+            }
+
+            try {
+                return ElmMakeScheduler.await(stored).getProblems(file);
+            } catch (IllegalStateException e) {
+                if (!(e.getCause() instanceof ExecutionException)) {
+                    throw e;
+                }
+                // Nothing is stored, so elm make is started again once the settings point to a working elm
+                LOG.error(e.getCause().getMessage(), e.getCause());
+                return Collections.emptyList();
+            }
+        }
+
+        private synchronized Optional<List<Problems>> getStoredProblems(long stamp, boolean unsaved, String compiler, String file) {
+            files.add(file);
+            if (snapshot != null && snapshot.isValid(stamp, unsaved, compiler, file)) {
+                return Optional.of(snapshot.getProblems(file));
+            }
+            return Optional.empty();
+        }
+
+        /** Stores the result of a run once, however many highlighting passes wait for it. */
+        private Snapshot storeResult(ElmMakeResult result, boolean unsaved, String compiler) {
+            synchronized (this) {
+                if (snapshot != null && snapshot.isResultOf(result, unsaved, compiler)) {
+                    return snapshot;
+                }
+            }
+            Snapshot newSnapshot = new Snapshot(root, result, unsaved, compiler);
+            updateSnapshot(newSnapshot);
+            LOG.debug(result.getProblems().size() + " problems for " + result.getFiles().size() + " files in " + root.getPath());
+            return newSnapshot;
+        }
+
+        private synchronized void updateSnapshot(Snapshot newSnapshot) {
+            if (snapshot == null || snapshot.unsaved != newSnapshot.unsaved || snapshot.modificationStamp <= newSnapshot.modificationStamp) {
+                snapshot = newSnapshot;
+            }
+        }
+
+        /**
+         * Takes the disk cache key right before elm make starts, once per run instead of once per highlighting
+         * pass. As the key is taken before compiling, the result is never stored under the key of newer sources.
+         */
+        private void prepareDiskCacheKey(ElmMakeDiskCache diskCache, String nodePath, String elmMakeExePath, long stamp) {
+            if (modificationStamp.get() != stamp) {
+                return;
+            }
+            diskCache.computeKey(root, nodePath, elmMakeExePath)
+                     .ifPresent(key -> diskCacheKey.set(new StampedKey(stamp, key)));
+        }
+
+        /**
+         * Writes the result under the key taken for its run when no source changed since. The key is used up, so
+         * the result is written once, however many highlighting passes waited for it.
+         */
+        private void saveToDiskCache(ElmMakeDiskCache diskCache, ElmMakeResult result) {
+            StampedKey key = diskCacheKey.get();
+            if (key == null || key.stamp != result.getModificationStamp() || modificationStamp.get() != key.stamp) {
+                return;
+            }
+            if (diskCacheKey.compareAndSet(key, null)) {
+                diskCache.save(root, key.key, result);
+            }
+        }
+    }
+
+    /** The disk cache key of the sources with the given modification stamp. */
+    private static class StampedKey {
+        private final long stamp;
+        private final String key;
+
+        StampedKey(long stamp, String key) {
+            this.stamp = stamp;
+            this.key = key;
+        }
+    }
+
+    private static class Snapshot {
+        private final long modificationStamp;
+        private final boolean unsaved;
+        private final String compiler;
+        private final Set<String> files;
+        private final List<Problems> rootProblems = new ArrayList<>();
+        private final Map<String, List<Problems>> problemsByFile = new HashMap<>();
+
+        Snapshot(ElmProjectRoot root, ElmMakeResult result, boolean unsaved, String compiler) {
+            this.modificationStamp = result.getModificationStamp();
+            this.unsaved = unsaved;
+            this.compiler = compiler;
+            this.files = result.getFiles();
+            for (Problems problem : result.getProblems()) {
+                if (problem.file == null) {
+                    rootProblems.add(problem);
+                } else {
+                    problemsByFile.computeIfAbsent(root.resolvePath(problem.file), k -> new ArrayList<>()).add(problem);
+                }
+            }
+        }
+
+        /** Whether the snapshot holds the problems of the file for the sources and the node and elm settings. */
+        boolean isValid(long stamp, boolean unsaved, String compiler, String file) {
+            return this.unsaved == unsaved && this.compiler.equals(compiler) && modificationStamp == stamp && files.contains(file);
+        }
+
+        boolean isResultOf(ElmMakeResult result, boolean unsaved, String compiler) {
+            return this.unsaved == unsaved && this.compiler.equals(compiler)
+                    && modificationStamp == result.getModificationStamp() && files.equals(result.getFiles());
+        }
+
+        List<Problems> getProblems(String file) {
+            List<Problems> result = new ArrayList<>(rootProblems);
+            result.addAll(problemsByFile.getOrDefault(file, Collections.emptyList()));
+            return result;
+        }
+    }
+}
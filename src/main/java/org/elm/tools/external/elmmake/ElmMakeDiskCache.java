@@ -0,0 +1,312 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+
+import org.elm.tools.external.ElmExternalToolsComponent;
+import org.elm.tools.external.elmmake.model.MessageSegment;
+import org.elm.tools.external.elmmake.model.Position;
+import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.elmmake.model.Region;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the last elm make result of each Elm project root in the system directory of the project, so
+ * annotations for unchanged sources are shown right after the IDE starts instead of after a full compile.
+ * An entry is only used when the compiler version and the contents of all sources and the manifest are
+ * the same as when it was written. The least recently used entries are removed when the cache gets too big.
+ * The hash of each source is kept until the VFS reports a change or its size or modification time differs,
+ * so computing a key does not read all sources again.
+ */
+public class ElmMakeDiskCache {
+    private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final long MAX_CACHE_SIZE = 32 * 1024 * 1024;
+    private static final String ENTRY_EXTENSION = ".problems";
+
+    private static final ConcurrentMap<String, String> COMPILER_VERSIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, SourceHash> SOURCE_HASHES = new ConcurrentHashMap<>();
+
+    private final File directory;
+
+    public ElmMakeDiskCache(Project project) {
+        this.directory = new File(PathManager.getSystemPath(), "elm-external-tools/" + project.getLocationHash());
+    }
+
+    public static ElmMakeDiskCache getInstance(Project project) {
+        return ServiceManager.getService(project, ElmMakeDiskCache.class);
+    }
+
+    /** Forgets the hash of the changed source, or of all sources below a changed directory. */
+    public static void sourceChanged(String path) {
+        if (path.endsWith(".elm")) {
+            SOURCE_HASHES.remove(path);
+        } else {
+            SOURCE_HASHES.keySet().removeIf(file -> file.equals(path) || file.startsWith(path + "/"));
+        }
+    }
+
+    /**
+     * Computes the key of the current sources of the root, or nothing when the compiler version is unknown
+     * or a source could not be read.
+     */
+    public Optional<String> computeKey(ElmProjectRoot root, String nodePath, String elmMakeExePath) {
+        Optional<String> compilerVersion = getCompilerVersion(nodePath, elmMakeExePath);
+        if (!compilerVersion.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            MessageDigest key = MessageDigest.getInstance("SHA-1");
+            key.update(compilerVersion.get().getBytes(StandardCharsets.UTF_8));
+            List<File> files = new ArrayList<>();
+            files.add(ElmManifest.getManifestFile(root));
+            files.addAll(ElmManifest.findSourceFiles(root));
+            for (File file : files) {
+                key.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+                key.update(getSourceHash(file));
+            }
+            return Optional.of(toHex(key.digest()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            LOG.debug("Unable to compute the cache key of " + root.getPath(), e);
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] getSourceHash(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        SourceHash hash = SOURCE_HASHES.get(file.getPath());
+        if (hash == null || hash.length != length || hash.lastModified != lastModified) {
+            hash = new SourceHash(length, lastModified, sha1(Files.readAllBytes(file.toPath())));
+            SOURCE_HASHES.put(file.getPath(), hash);
+        }
+        return hash.hash;
+    }
+
+    public Optional<ElmMakeResult> load(ElmProjectRoot root, String key, long modificationStamp) {
+        File entry = getEntryFile(root);
+        if (!entry.isFile()) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(entry))))) {
+            if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+                return Optional.empty();
+            }
+            Set<String> files = new HashSet<>();
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                files.add(in.readUTF());
+            }
+            List<Problems> problems = new ArrayList<>();
+            int problemCount = in.readInt();
+            for (int i = 0; i < problemCount; i++) {
+                problems.add(readProblem(in));
+            }
+            entry.setLastModified(System.currentTimeMillis());
+            return Optional.of(new ElmMakeResult(modificationStamp, files, problems));
+        } catch (IOException e) {
+            LOG.debug("Unable to read the cached problems of " + root.getPath(), e);
+            return Optional.empty();
+        }
+    }
+
+    public void save(ElmProjectRoot root, String key, ElmMakeResult result) {
+        File entry = getEntryFile(root);
+        try {
+            Files.createDirectories(directory.toPath());
+            File temporary = File.createTempFile("entry", ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporary))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeInt(result.getFiles().size());
+                for (String file : result.getFiles()) {
+                    out.writeUTF(file);
+                }
+                out.writeInt(result.getProblems().size());
+                for (Problems problem : result.getProblems()) {
+                    writeProblem(out, problem);
+                }
+            }
+            Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.debug("Unable to cache the problems of " + root.getPath(), e);
+            return;
+        }
+        evictLeastRecentlyUsed();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+        if (entries == null) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified).reversed());
+        long size = 0;
+        for (File entry : entries) {
+            size += entry.length();
+            if (size > MAX_CACHE_SIZE && !entry.delete()) {
+                LOG.debug("Unable to evict " + entry);
+            }
+        }
+    }
+
+    private File getEntryFile(ElmProjectRoot root) {
+        return new File(directory, toHex(sha1(root.getPath().getBytes(StandardCharsets.UTF_8))) + ENTRY_EXTENSION);
+    }
+
+    private static Optional<String> getCompilerVersion(String nodePath, String elmMakeExePath) {
+        File executable = new File(elmMakeExePath);
+        String versionKey = nodePath + File.pathSeparator + elmMakeExePath + File.pathSeparator + executable.lastModified();
+        String version = COMPILER_VERSIONS.computeIfAbsent(versionKey, k -> {
+            try {
+                return ElmMake.getVersion(nodePath, elmMakeExePath);
+            } catch (Exception e) {
+                LOG.debug("Unable to determine the Elm version of " + elmMakeExePath, e);
+                return "-";
+            }
+        });
+        return version == null || "-".equals(version) ? Optional.empty() : Optional.of(version);
+    }
+
+    private static void writeProblem(DataOutputStream out, Problems problem) throws IOException {
+        writeString(out, problem.tag);
+        writeString(out, problem.overview);
+        writeString(out, problem.message == null ? problem.details : null);
+        writeString(out, problem.type);
+        writeString(out, problem.file);
+        writeRegion(out, problem.region);
+        writeRegion(out, problem.subregion);
+        out.writeInt(problem.message == null ? -1 : problem.message.size());
+        if (problem.message != null) {
+            for (MessageSegment segment : problem.message) {
+                writeString(out, segment.string);
+                out.writeBoolean(segment.bold);
+                out.writeBoolean(segment.underline);
+                writeString(out, segment.color);
+            }
+        }
+    }
+
+    private static Problems readProblem(DataInputStream in) throws IOException {
+        Problems problem = new Problems();
+        problem.tag = readString(in);
+        problem.overview = readString(in);
+        problem.details = readString(in);
+        problem.type = readString(in);
+        problem.file = readString(in);
+        problem.region = readRegion(in);
+        problem.subregion = readRegion(in);
+        int segmentCount = in.readInt();
+        if (segmentCount >= 0) {
+            problem.message = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                MessageSegment segment = new MessageSegment();
+                segment.string = readString(in);
+                segment.bold = in.readBoolean();
+                segment.underline = in.readBoolean();
+                segment.color = readString(in);
+                problem.message.add(segment);
+            }
+        }
+        return problem;
+    }
+
+    private static void writeRegion(DataOutputStream out, Region region) throws IOException {
+        out.writeBoolean(region != null);
+        if (region != null) {
+            out.writeInt(region.start.line);
+            out.writeInt(region.start.column);
+            out.writeInt(region.end.line);
+            out.writeInt(region.end.column);
+        }
+    }
+
+    private static Region readRegion(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Region region = new Region();
+        region.start = new Position();
+        region.start.line = in.readInt();
+        region.start.column = in.readInt();
+        region.end = new Position();
+        region.end.line = in.readInt();
+        region.end.column = in.readInt();
+        return region;
+    }
+
+    /** Like writeUTF, but without its 64 KB limit and allowing null. */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class SourceHash {
+        private final long length;
+        private final long lastModified;
+        private final byte[] hash;
+
+        SourceHash(long length, long lastModified, byte[] hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
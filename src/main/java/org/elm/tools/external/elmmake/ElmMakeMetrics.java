@@ -0,0 +1,87 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+
+import org.elm.tools.external.ElmExternalToolsComponent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records where the highlighting latency is spent: the wall time of elm make, the CPU time spent reading and
+ * parsing its report, the number of problems per run and the time spent applying annotations. Only completed
+ * highlighting compiles are recorded; superseded runs and Elm Make All are left out. Every measurement is
+ * logged at debug level, and {@link #getSummary()} is shown by the Elm Make Statistics action.
+ */
+public class ElmMakeMetrics {
+    private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Metric compileTime = new Metric("elm make wall time", "ms");
+    private final Metric parseTime = new Metric("Report read and parse CPU time", "ms");
+    private final Metric problemsPerRun = new Metric("Problems per run", "");
+    private final Metric applyTime = new Metric("Annotation apply time", "ms");
+
+    public static ElmMakeMetrics getInstance() {
+        return ServiceManager.getService(ElmMakeMetrics.class);
+    }
+
+    /** CPU time of the current thread in nanoseconds, or 0 when the JVM does not measure it. */
+    public static long currentThreadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public void recordRun(long wallNanos, long parseNanos, int problems) {
+        compileTime.add(TimeUnit.NANOSECONDS.toMillis(wallNanos));
+        parseTime.add(TimeUnit.NANOSECONDS.toMillis(parseNanos));
+        problemsPerRun.add(problems);
+        LOG.debug("elm make took " + TimeUnit.NANOSECONDS.toMillis(wallNanos) + " ms, parsing " + TimeUnit.NANOSECONDS.toMillis(parseNanos)
+                + " ms CPU, " + problems + " problems");
+    }
+
+    public void recordApply(long nanos, int problems) {
+        applyTime.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+        LOG.debug("Applying " + problems + " annotations took " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+    }
+
+    public String getSummary() {
+        ElmMakeScheduler scheduler = ElmMakeScheduler.getInstance();
+        return compileTime + "<br/>"
+                + parseTime + "<br/>"
+                + problemsPerRun + "<br/>"
+                + applyTime + "<br/>"
+                + "Queued runs: " + scheduler.getQueueDepth() + "<br/>"
+                + "Superseded runs: " + scheduler.getSupersededRuns();
+    }
+
+    private static class Metric {
+        private final String name;
+        private final String unit;
+        private long count;
+        private long total;
+        private long max;
+        private long last;
+
+        Metric(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        synchronized void add(long value) {
+            count++;
+            total += value;
+            max = Math.max(max, value);
+            last = value;
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (count == 0) {
+                return name + ": -";
+            }
+            return name + ": last " + last + unit + ", average " + (total / count) + unit + ", max " + max + unit + " (" + count + " times)";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.elm.tools.external.elmmake;
+
+import org.elm.tools.external.elmmake.model.Problems;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/** The outcome of one elm make run for a project root. */
+public class ElmMakeResult {
+    private final long modificationStamp;
+    private final Set<String> files;
+    private final List<Problems> problems;
+
+    public ElmMakeResult(long modificationStamp, Set<String> files, List<Problems> problems) {
+        this.modificationStamp = modificationStamp;
+        this.files = Collections.unmodifiableSet(files);
+        this.problems = Collections.unmodifiableList(problems);
+    }
+
+    /** The modification stamp of the root's sources when the run was requested. */
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    /** The files passed to elm make. */
+    public Set<String> getFiles() {
+        return files;
+    }
+
+    public List<Problems> getProblems() {
+        return problems;
+    }
+}
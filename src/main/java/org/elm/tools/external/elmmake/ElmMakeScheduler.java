@@ -0,0 +1,297 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import org.elm.tools.external.elmmake.model.Problems;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs elm make for the project roots. Requests for a root arriving within the debounce window are
+ * merged into a single run, a running compile is destroyed as soon as a newer request makes it
+ * obsolete, and the number of compiler processes running at the same time is capped for all
+ * projects together. Only one compile of a root runs at a time, including compiles that do not come
+ * from highlighting, so two compilers never write to the same elm-stuff.
+ */
+public class ElmMakeScheduler {
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long POLL_MILLIS = 50;
+
+    private final ConcurrentMap<String, RootQueue> queues = new ConcurrentHashMap<>();
+    private final Semaphore processPermits = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong supersededRuns = new AtomicLong();
+
+    public static ElmMakeScheduler getInstance() {
+        return ServiceManager.getService(ElmMakeScheduler.class);
+    }
+
+    /**
+     * Requests an elm make run of the given files for the root. The returned future completes with the
+     * result of a run that includes at least these files and is not older than the given stamp.
+     */
+    public CompletableFuture<ElmMakeResult> schedule(ElmProjectRoot root, String nodePath, String elmMakeExePath, Collection<String> files, long modificationStamp) {
+        return schedule(root, nodePath, elmMakeExePath, files, modificationStamp, () -> {
+        });
+    }
+
+    /** Like {@link #schedule(ElmProjectRoot, String, String, Collection, long)}, running prepare right before elm make is started. */
+    public CompletableFuture<ElmMakeResult> schedule(ElmProjectRoot root, String nodePath, String elmMakeExePath, Collection<String> files, long modificationStamp, Runnable prepare) {
+        return queues.computeIfAbsent(root.getPath(), path -> new RootQueue()).request(root, nodePath, elmMakeExePath, files, modificationStamp, prepare);
+    }
+
+    /** Number of runs waiting for the debounce window to end or for a free compiler process. */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /** Number of runs that were destroyed or dropped because a newer request made them obsolete. */
+    public long getSupersededRuns() {
+        return supersededRuns.get();
+    }
+
+    /**
+     * Runs a compile of the root that does not come from highlighting, such as Elm Make All, once no other
+     * compile of the root is running and a compiler process is available.
+     */
+    public void runExclusively(ElmProjectRoot root, Compile compile) throws ExecutionException, InterruptedException {
+        RootQueue queue = queues.computeIfAbsent(root.getPath(), path -> new RootQueue());
+        queue.runSlot.acquire();
+        try {
+            processPermits.acquire();
+            try {
+                compile.run();
+            } finally {
+                processPermits.release();
+            }
+        } finally {
+            queue.runSlot.release();
+        }
+    }
+
+    /** A compile run by {@link #runExclusively}. */
+    public interface Compile {
+        void run() throws ExecutionException, InterruptedException;
+    }
+
+    /**
+     * Waits for the future while checking the progress indicator of the calling thread, so a cancelled
+     * highlighting pass stops waiting instead of blocking until the compiler finishes.
+     */
+    public static <T> T await(Future<T> future) {
+        while (true) {
+            ProgressManager.checkCanceled();
+            try {
+                return future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Check for cancellation and wait again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException(e);
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (e.getCause() instanceof InterruptedException) {
+                    throw new ProcessCanceledException(e.getCause());
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private class RootQueue {
+        private final Semaphore runSlot = new Semaphore(1);
+        private Run pending;
+        private Run running;
+
+        synchronized CompletableFuture<ElmMakeResult> request(ElmProjectRoot root, String nodePath, String elmMakeExePath, Collection<String> files, long modificationStamp, Runnable prepare) {
+            if (pending != null) {
+                pending.merge(root, nodePath, elmMakeExePath, files, modificationStamp, prepare);
+                return pending.future;
+            }
+            if (running != null && running.covers(root, nodePath, elmMakeExePath, files, modificationStamp)) {
+                return running.future;
+            }
+
+            pending = new Run(root, nodePath, elmMakeExePath, files, modificationStamp, prepare);
+            if (running != null) {
+                // Whoever waits for the obsolete run gets the result of the new one instead
+                pending.supersede(running);
+                running.destroy();
+                supersededRuns.incrementAndGet();
+            }
+            queueDepth.incrementAndGet();
+            AppExecutorUtil.getAppScheduledExecutorService().schedule(
+                    () -> ApplicationManager.getApplication().executeOnPooledThread(this::runPending),
+                    DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            return pending.future;
+        }
+
+        private void runPending() {
+            final Run run;
+            synchronized (this) {
+                run = pending;
+                pending = null;
+                running = run;
+            }
+
+            try {
+                runSlot.acquire();
+            } catch (InterruptedException e) {
+                fail(run, e);
+                return;
+            }
+            try {
+                processPermits.acquire();
+            } catch (InterruptedException e) {
+                runSlot.release();
+                fail(run, e);
+                return;
+            }
+            queueDepth.decrementAndGet();
+
+            try {
+                List<Problems> problems = run.execute();
+                finish(run);
+                if (!run.isDestroyed()) {
+                    run.future.complete(run.toResult(problems));
+                }
+            } catch (ExecutionException | InterruptedException | RuntimeException e) {
+                // A run that could not start elm, for example because its path is not set up yet, has no result
+                // that could be stored as "no problems"
+                finish(run);
+                if (!run.isDestroyed()) {
+                    run.future.completeExceptionally(e);
+                }
+            } finally {
+                processPermits.release();
+                runSlot.release();
+            }
+        }
+
+        /** Nothing was compiled, so there is no result that could be stored for the stamp of the run. */
+        private void fail(Run run, InterruptedException e) {
+            queueDepth.decrementAndGet();
+            finish(run);
+            run.future.completeExceptionally(e);
+            Thread.currentThread().interrupt();
+        }
+
+        private synchronized void finish(Run run) {
+            if (running == run) {
+                running = null;
+            }
+        }
+    }
+
+    private static class Run {
+        private final CompletableFuture<ElmMakeResult> future;
+        private final Set<String> files = new HashSet<>();
+        private ElmProjectRoot root;
+        private String nodePath;
+        private String elmMakeExePath;
+        private long modificationStamp;
+        private Runnable prepare;
+
+        private Process process;
+        private boolean destroyed;
+
+        Run(ElmProjectRoot root, String nodePath, String elmMakeExePath, Collection<String> files, long modificationStamp, Runnable prepare) {
+            this.future = new CompletableFuture<>();
+            merge(root, nodePath, elmMakeExePath, files, modificationStamp, prepare);
+        }
+
+        synchronized void merge(ElmProjectRoot root, String nodePath, String elmMakeExePath, Collection<String> files, long modificationStamp, Runnable prepare) {
+            this.root = root;
+            this.prepare = prepare;
+            this.nodePath = nodePath;
+            this.elmMakeExePath = elmMakeExePath;
+            this.files.addAll(files);
+            this.modificationStamp = Math.max(this.modificationStamp, modificationStamp);
+        }
+
+        synchronized void supersede(Run obsolete) {
+            files.addAll(obsolete.getFiles());
+            future.whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    obsolete.future.completeExceptionally(throwable);
+                } else {
+                    obsolete.future.complete(result);
+                }
+            });
+        }
+
+        synchronized Set<String> getFiles() {
+            return new HashSet<>(files);
+        }
+
+        synchronized boolean covers(ElmProjectRoot requestedRoot, String requestedNodePath, String requestedElmMakeExePath, Collection<String> requestedFiles, long requestedStamp) {
+            return !destroyed
+                    && root.getVersion() == requestedRoot.getVersion()
+                    && nodePath.equals(requestedNodePath)
+                    && elmMakeExePath.equals(requestedElmMakeExePath)
+                    && modificationStamp >= requestedStamp
+                    && files.containsAll(requestedFiles);
+        }
+
+        /**
+         * Compiles and collects the whole report. A file without problems is only known to be clean once the
+         * whole report has been read, so highlighting waits for the complete result instead of showing the
+         * problems of the first modules early. Only runs that were not destroyed count towards the metrics.
+         */
+        List<Problems> execute() throws ExecutionException, InterruptedException {
+            getPrepare().run();
+            final long startTime = System.nanoTime();
+            final Process started;
+            synchronized (this) {
+                if (destroyed) {
+                    return Collections.emptyList();
+                }
+                started = ElmMake.start(root.getPath(), nodePath, elmMakeExePath, files);
+                process = started;
+            }
+            List<Problems> problems = Collections.synchronizedList(new ArrayList<>());
+            long parseTime = ElmMake.readProblems(started, root.getVersion(), problems::add, this::isDestroyed);
+            if (!isDestroyed()) {
+                ElmMakeMetrics.getInstance().recordRun(System.nanoTime() - startTime, parseTime, problems.size());
+            }
+            return new ArrayList<>(problems);
+        }
+
+        synchronized Runnable getPrepare() {
+            return prepare;
+        }
+
+        synchronized void destroy() {
+            destroyed = true;
+            if (process != null) {
+                process.destroy();
+            }
+        }
+
+        synchronized boolean isDestroyed() {
+            return destroyed;
+        }
+
+        synchronized ElmMakeResult toResult(List<Problems> problems) {
+            return new ElmMakeResult(modificationStamp, new HashSet<>(files), problems);
+        }
+    }
+}
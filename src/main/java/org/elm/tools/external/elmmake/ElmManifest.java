@@ -0,0 +1,146 @@
+package org.elm.tools.external.elmmake;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+
+import org.elm.tools.external.ElmExternalToolsComponent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Reads the source directories of an Elm project from its elm.json or elm-package.json. */
+public class ElmManifest {
+    private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+    private static final String SOURCE_DIRECTORIES = "source-directories";
+    private static final String BUILD_OUTPUT = "elm-stuff";
+
+    private ElmManifest() {
+        // static class
+    }
+
+    public static File getManifestFile(ElmProjectRoot root) {
+        return new File(root.getPath(), root.getVersion().getManifestFileName());
+    }
+
+    /** The directory elm make writes its build output to. */
+    public static File getBuildOutputDirectory(ElmProjectRoot root) {
+        return new File(root.getPath(), BUILD_OUTPUT);
+    }
+
+    /** Returns the source directories as canonical files; packages without the field use "src". */
+    public static List<File> getSourceDirectories(ElmProjectRoot root) {
+        List<File> directories = new ArrayList<>();
+        for (String directory : readSourceDirectories(root)) {
+            try {
+                directories.add(new File(root.getPath(), directory).getCanonicalFile());
+            } catch (IOException e) {
+                LOG.warn("Unable to resolve source directory " + directory + " of " + root.getPath(), e);
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Returns the contents of the manifest with its source directories replaced by the given ones. Packages
+     * without the field are returned unchanged.
+     */
+    public static String withSourceDirectories(ElmProjectRoot root, List<String> sourceDirectories) throws IOException {
+        JsonElement manifest = readManifest(root);
+        if (manifest.isJsonObject() && manifest.getAsJsonObject().has(SOURCE_DIRECTORIES)) {
+            JsonArray directories = new JsonArray();
+            sourceDirectories.forEach(directories::add);
+            manifest.getAsJsonObject().add(SOURCE_DIRECTORIES, directories);
+        }
+        return manifest.toString();
+    }
+
+    private static JsonElement readManifest(ElmProjectRoot root) throws IOException {
+        try (Reader reader = Files.newBufferedReader(getManifestFile(root).toPath(), StandardCharsets.UTF_8)) {
+            return new JsonParser().parse(reader);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<String> readSourceDirectories(ElmProjectRoot root) {
+        try {
+            JsonElement manifest = readManifest(root);
+            if (manifest.isJsonObject()) {
+                JsonObject manifestObject = manifest.getAsJsonObject();
+                if (manifestObject.has(SOURCE_DIRECTORIES) && manifestObject.get(SOURCE_DIRECTORIES).isJsonArray()) {
+                    List<String> directories = new ArrayList<>();
+                    JsonArray sourceDirectories = manifestObject.getAsJsonArray(SOURCE_DIRECTORIES);
+                    for (JsonElement directory : sourceDirectories) {
+                        directories.add(directory.getAsString());
+                    }
+                    return directories;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            LOG.warn("Unable to read the source directories of " + root.getPath(), e);
+        }
+        return Collections.singletonList("src");
+    }
+
+    /**
+     * Returns all .elm files in the source directories, sorted by path. Only directories that are part of a
+     * module name are searched, so elm-stuff, node_modules and .git are skipped, even when the source directory
+     * is the project root.
+     */
+    public static List<File> findSourceFiles(ElmProjectRoot root) {
+        List<File> files = new ArrayList<>();
+        for (File directory : getSourceDirectories(root)) {
+            collectSourceFiles(directory, files);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /** Returns all .elm files below a single source directory, sorted by path. */
+    public static List<File> findSourceFiles(File directory) {
+        List<File> files = new ArrayList<>();
+        collectSourceFiles(directory, files);
+        files.sort(null);
+        return files;
+    }
+
+    private static void collectSourceFiles(File directory, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                if (isModuleDirectory(child.getName())) {
+                    collectSourceFiles(child, files);
+                }
+            } else if (child.getName().endsWith(".elm")) {
+                files.add(child);
+            }
+        }
+    }
+
+    /** Elm module names consist of capitalized parts, so only such directories can contain modules. */
+    public static boolean isModuleDirectory(String name) {
+        if (name.isEmpty() || !Character.isUpperCase(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
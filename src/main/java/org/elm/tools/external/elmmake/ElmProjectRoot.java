@@ -0,0 +1,69 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.openapi.util.io.FileUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A directory containing an elm.json or elm-package.json, the working directory for elm make. */
+public class ElmProjectRoot {
+    private final String path;
+    private final ElmVersion version;
+    private volatile List<String> sourceDirectories;
+
+    public ElmProjectRoot(String path, ElmVersion version) {
+        this.path = path;
+        this.version = version;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public ElmVersion getVersion() {
+        return version;
+    }
+
+    public String getManifestPath() {
+        return path + "/" + version.getManifestFileName();
+    }
+
+    /**
+     * Whether a change of the path affects the compile of this root: the path is the manifest, lies in one of
+     * the source directories, which may be outside the root, or is a directory containing a source directory.
+     */
+    public boolean contains(String path) {
+        if (path.equals(getManifestPath())) {
+            return true;
+        }
+        for (String directory : getSourceDirectories()) {
+            if (path.startsWith(directory + "/") || directory.equals(path) || directory.startsWith(path + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Forgets the source directories, so they are read again after the manifest changed. */
+    void manifestChanged() {
+        sourceDirectories = null;
+    }
+
+    private List<String> getSourceDirectories() {
+        List<String> directories = sourceDirectories;
+        if (directories == null) {
+            directories = new ArrayList<>();
+            for (File directory : ElmManifest.getSourceDirectories(this)) {
+                directories.add(FileUtil.toSystemIndependentName(directory.getPath()));
+            }
+            sourceDirectories = directories;
+        }
+        return directories;
+    }
+
+    /** Resolves a file reported by elm make, which Elm 0.18 reports relative to the root. */
+    public String resolvePath(String file) {
+        return file.replace("./", path + "/");
+    }
+}
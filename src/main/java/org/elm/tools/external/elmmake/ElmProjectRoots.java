@@ -0,0 +1,99 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps directories to the Elm project root they belong to. Directories are added the first time a file in
+ * them is looked up; entries are dropped when an elm.json or elm-package.json is created, deleted, moved or
+ * renamed at or above them.
+ */
+public class ElmProjectRoots {
+    private final ConcurrentMap<String, Optional<ElmProjectRoot>> rootsByDirectory = new ConcurrentHashMap<>();
+
+    public static ElmProjectRoots getInstance() {
+        return ServiceManager.getService(ElmProjectRoots.class);
+    }
+
+    public Optional<ElmProjectRoot> findRoot(VirtualFile file) {
+        VirtualFile directory = file.isDirectory() ? file : file.getParent();
+        if (directory == null) {
+            return Optional.empty();
+        }
+        Optional<ElmProjectRoot> root = rootsByDirectory.get(directory.getPath());
+        if (root != null) {
+            return root;
+        }
+        return ApplicationManager.getApplication().runReadAction((Computable<Optional<ElmProjectRoot>>) () -> lookupRoot(directory));
+    }
+
+    private Optional<ElmProjectRoot> lookupRoot(VirtualFile start) {
+        List<String> visited = new ArrayList<>();
+        Optional<ElmProjectRoot> root = Optional.empty();
+        VirtualFile directory = start;
+        while (directory != null && directory.isValid()) {
+            Optional<ElmProjectRoot> cached = rootsByDirectory.get(directory.getPath());
+            if (cached != null) {
+                root = cached;
+                break;
+            }
+            visited.add(directory.getPath());
+            ElmVersion version = findVersion(directory);
+            if (version != null) {
+                root = Optional.ofNullable(directory.getCanonicalPath()).map(path -> new ElmProjectRoot(path, version));
+                break;
+            }
+            directory = directory.getParent();
+        }
+
+        for (String path : visited) {
+            rootsByDirectory.put(path, root);
+        }
+        return root;
+    }
+
+    private ElmVersion findVersion(VirtualFile directory) {
+        if (directory.findChild(ElmVersion.ELM_019.getManifestFileName()) != null) {
+            return ElmVersion.ELM_019;
+        }
+        if (directory.findChild(ElmVersion.ELM_018.getManifestFileName()) != null) {
+            return ElmVersion.ELM_018;
+        }
+        return null;
+    }
+
+    /** Finds the roots of all elm.json and elm-package.json files in the content of the project. */
+    public List<ElmProjectRoot> findAllRoots(Project project) {
+        Map<String, ElmProjectRoot> roots = new TreeMap<>();
+        for (ElmVersion version : ElmVersion.values()) {
+            Collection<VirtualFile> manifests = DumbService.getInstance(project).runReadActionInSmartMode((Computable<Collection<VirtualFile>>) () ->
+                    FilenameIndex.getVirtualFilesByName(project, version.getManifestFileName(), GlobalSearchScope.projectScope(project)));
+            for (VirtualFile manifest : manifests) {
+                if (!manifest.getPath().contains("/elm-stuff/")) {
+                    findRoot(manifest).ifPresent(root -> roots.put(root.getPath(), root));
+                }
+            }
+        }
+        return new ArrayList<>(roots.values());
+    }
+
+    /** Forgets the roots of the directory and all directories below it. */
+    public void invalidate(String directoryPath) {
+        rootsByDirectory.keySet().removeIf(path -> path.equals(directoryPath) || path.startsWith(directoryPath + "/"));
+    }
+}
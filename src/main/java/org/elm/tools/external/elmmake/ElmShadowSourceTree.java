@@ -0,0 +1,255 @@
+package org.elm.tools.external.elmmake;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import org.elm.tools.external.ElmExternalToolsComponent;
+import org.elm.tools.external.elmmake.model.Problems;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A mirror of the sources of an Elm project root in which unsaved documents replace the files on disk, so
+ * elm make reports problems of what is in the editor without saving. Unchanged sources are symbolic links
+ * to the real files, and the elm-stuff of the root is copied once, so compiles in the mirror stay incremental
+ * without writing to the real build output. The mirrors live in the system directory of the IDE, which only
+ * the current user can write to, and are deleted when the IDE exits.
+ */
+public class ElmShadowSourceTree {
+    private static final Logger LOG = Logger.getInstance(ElmExternalToolsComponent.class);
+    private static final File BASE_DIRECTORY = new File(PathManager.getSystemPath(), "elm-external-tools-shadow");
+
+    private static final ConcurrentMap<String, ElmShadowSourceTree> TREES = new ConcurrentHashMap<>();
+
+    private final ElmProjectRoot root;
+    private final File directory;
+    private final Map<File, File> sourceDirectories = new LinkedHashMap<>();
+    private long manifestModified;
+    private boolean useCopies;
+
+    private ElmShadowSourceTree(ElmProjectRoot root, File directory) {
+        this.root = root;
+        this.directory = directory;
+    }
+
+    public static ElmShadowSourceTree forRoot(ElmProjectRoot root) {
+        return TREES.compute(root.getPath(), (path, existing) ->
+                existing != null && existing.root.getVersion() == root.getVersion() ? existing : new ElmShadowSourceTree(root, createDirectory(root)));
+    }
+
+    private static File createDirectory(ElmProjectRoot root) {
+        String name = new File(root.getPath()).getName() + "-" + Integer.toHexString(root.getPath().hashCode());
+        return new File(BASE_DIRECTORY, name);
+    }
+
+    /** Removes mirrors left behind by a previous session that did not exit normally. */
+    public static void deleteStale() {
+        if (BASE_DIRECTORY.exists()) {
+            FileUtil.asyncDelete(BASE_DIRECTORY);
+        }
+    }
+
+    /** Removes all mirrors, including their copies of elm-stuff. */
+    public static void deleteAll() {
+        TREES.clear();
+        FileUtil.delete(BASE_DIRECTORY);
+    }
+
+    /** The mirror as a project root, to run elm make in. */
+    public ElmProjectRoot getShadowRoot() {
+        return new ElmProjectRoot(directory.getPath(), root.getVersion());
+    }
+
+    /**
+     * Brings the mirror up to date with the sources on disk and the unsaved documents. Runs right before
+     * elm make is started.
+     */
+    public synchronized void sync() {
+        try {
+            syncManifest();
+            Map<String, String> unsavedSources = ApplicationManager.getApplication().runReadAction((Computable<Map<String, String>>) ElmShadowSourceTree::getUnsavedSources);
+            for (Map.Entry<File, File> sourceDirectory : sourceDirectories.entrySet()) {
+                Set<String> mirrored = new HashSet<>();
+                File realDirectory = sourceDirectory.getKey();
+                for (File source : ElmManifest.findSourceFiles(realDirectory)) {
+                    File shadowSource = new File(sourceDirectory.getValue(), FileUtil.getRelativePath(realDirectory, source));
+                    syncSource(source, shadowSource, unsavedSources);
+                    mirrored.add(shadowSource.getPath());
+                }
+                removeDeletedSources(sourceDirectory.getValue(), mirrored);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to update the shadow sources of " + root.getPath(), e);
+        }
+    }
+
+    /** Sources are found below the canonical source directories, so the documents are looked up by canonical path. */
+    private static Map<String, String> getUnsavedSources() {
+        Map<String, String> unsavedSources = new HashMap<>();
+        FileDocumentManager fileDocumentManager = FileDocumentManager.getInstance();
+        for (Document document : fileDocumentManager.getUnsavedDocuments()) {
+            VirtualFile file = fileDocumentManager.getFile(document);
+            if (file != null && file.getName().endsWith(".elm") && file.getCanonicalPath() != null) {
+                unsavedSources.put(file.getCanonicalPath(), document.getText());
+            }
+        }
+        return unsavedSources;
+    }
+
+    private void syncManifest() throws IOException {
+        File manifest = ElmManifest.getManifestFile(root);
+        if (manifest.lastModified() == manifestModified && directory.isDirectory()) {
+            return;
+        }
+        Files.createDirectories(directory.toPath());
+
+        File buildOutput = ElmManifest.getBuildOutputDirectory(root);
+        File shadowBuildOutput = new File(directory, buildOutput.getName());
+        if (buildOutput.isDirectory() && !shadowBuildOutput.exists()) {
+            FileUtil.copyDir(buildOutput, shadowBuildOutput);
+        }
+
+        sourceDirectories.clear();
+        List<File> realSourceDirectories = ElmManifest.getSourceDirectories(root);
+        List<String> shadowSourceDirectories = new ArrayList<>();
+        for (File realSourceDirectory : realSourceDirectories) {
+            String relativePath = FileUtil.getRelativePath(new File(root.getPath()), realSourceDirectory);
+            if (relativePath == null || relativePath.startsWith("..")) {
+                relativePath = "external-" + shadowSourceDirectories.size();
+            }
+            sourceDirectories.put(realSourceDirectory, new File(directory, relativePath));
+            shadowSourceDirectories.add(FileUtil.toSystemIndependentName(relativePath));
+        }
+
+        writeIfChanged(new File(directory, manifest.getName()).toPath(), ElmManifest.withSourceDirectories(root, shadowSourceDirectories));
+        manifestModified = manifest.lastModified();
+    }
+
+    private void syncSource(File source, File shadowSource, Map<String, String> unsavedSources) throws IOException {
+        Files.createDirectories(shadowSource.getParentFile().toPath());
+        String unsavedSource = unsavedSources.get(FileUtil.toSystemIndependentName(source.getPath()));
+        if (unsavedSource != null) {
+            if (Files.isSymbolicLink(shadowSource.toPath())) {
+                Files.delete(shadowSource.toPath());
+            }
+            writeIfChanged(shadowSource.toPath(), unsavedSource);
+        } else {
+            mirrorSource(source.toPath(), shadowSource.toPath());
+        }
+    }
+
+    private void mirrorSource(Path source, Path shadow) throws IOException {
+        if (!useCopies) {
+            if (Files.isSymbolicLink(shadow) && Files.readSymbolicLink(shadow).equals(source)) {
+                return;
+            }
+            Files.deleteIfExists(shadow);
+            try {
+                Files.createSymbolicLink(shadow, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                LOG.debug("Symbolic links not supported, copying the sources instead", e);
+                useCopies = true;
+            }
+        }
+        if (Files.isSymbolicLink(shadow) || Files.getLastModifiedTime(source).compareTo(getLastModifiedTime(shadow)) != 0) {
+            Files.deleteIfExists(shadow);
+            Files.copy(source, shadow, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static FileTime getLastModifiedTime(Path path) throws IOException {
+        return Files.exists(path) ? Files.getLastModifiedTime(path) : FileTime.fromMillis(0);
+    }
+
+    private void removeDeletedSources(File shadowDirectory, Set<String> mirrored) throws IOException {
+        File[] children = shadowDirectory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory() && !Files.isSymbolicLink(child.toPath())) {
+                if (ElmManifest.isModuleDirectory(child.getName())) {
+                    removeDeletedSources(child, mirrored);
+                }
+            } else if (child.getName().endsWith(".elm") && !mirrored.contains(child.getPath())) {
+                Files.delete(child.toPath());
+            }
+        }
+    }
+
+    /** Writes through a temporary file, so elm make never reads a partially written source. */
+    private static void writeIfChanged(Path path, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(path) && Arrays.equals(Files.readAllBytes(path), bytes)) {
+            return;
+        }
+        Path temporary = Files.createTempFile(path.getParent(), "shadow", ".tmp");
+        Files.write(temporary, bytes);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized String toShadowPath(String realPath) {
+        if (sourceDirectories.isEmpty()) {
+            try {
+                syncManifest();
+            } catch (IOException e) {
+                LOG.warn("Unable to create the shadow sources of " + root.getPath(), e);
+            }
+        }
+        for (Map.Entry<File, File> sourceDirectory : sourceDirectories.entrySet()) {
+            String realDirectory = FileUtil.toSystemIndependentName(sourceDirectory.getKey().getPath());
+            if (realPath.startsWith(realDirectory + "/")) {
+                return FileUtil.toSystemIndependentName(sourceDirectory.getValue().getPath()) + realPath.substring(realDirectory.length());
+            }
+        }
+        return realPath;
+    }
+
+    public synchronized String toRealPath(String shadowPath) {
+        String path = shadowPath.startsWith("./") ? FileUtil.toSystemIndependentName(directory.getPath()) + shadowPath.substring(1) : shadowPath;
+        for (Map.Entry<File, File> sourceDirectory : sourceDirectories.entrySet()) {
+            String shadowDirectory = FileUtil.toSystemIndependentName(sourceDirectory.getValue().getPath());
+            if (path.startsWith(shadowDirectory + "/")) {
+                return FileUtil.toSystemIndependentName(sourceDirectory.getKey().getPath()) + path.substring(shadowDirectory.length());
+            }
+        }
+        return path;
+    }
+
+    /** Converts a result of a compile in the mirror to the paths of the real sources. */
+    public ElmMakeResult toRealResult(ElmMakeResult result) {
+        Set<String> files = new HashSet<>();
+        for (String file : result.getFiles()) {
+            files.add(toRealPath(file));
+        }
+        for (Problems problem : result.getProblems()) {
+            if (problem.file != null) {
+                problem.file = toRealPath(problem.file);
+            }
+        }
+        return new ElmMakeResult(result.getModificationStamp(), files, result.getProblems());
+    }
+}
@@ -0,0 +1,26 @@
+package org.elm.tools.external.elmmake;
+
+/** The Elm versions supported by the plugin, recognized by the manifest file in the project root. */
+public enum ElmVersion {
+    ELM_018("elm-package.json"),
+    ELM_019("elm.json");
+
+    private final String manifestFileName;
+
+    ElmVersion(String manifestFileName) {
+        this.manifestFileName = manifestFileName;
+    }
+
+    public String getManifestFileName() {
+        return manifestFileName;
+    }
+
+    public static boolean isManifestFileName(String fileName) {
+        for (ElmVersion version : values()) {
+            if (version.manifestFileName.equals(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
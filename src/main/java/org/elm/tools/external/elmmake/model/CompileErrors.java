@@ -7,5 +7,5 @@ public class CompileErrors {
     public List<CompileError> errors;
     public String path;
     public String title;
-    public List<Object> message;
+    public List<MessageSegment> message;
 }
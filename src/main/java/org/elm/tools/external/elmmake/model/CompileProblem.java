@@ -5,6 +5,6 @@ import java.util.List;
 public class CompileProblem {
     public String title;
     public Region region;
-    public List<Object> message;
+    public List<MessageSegment> message;
 }
 
@@ -0,0 +1,8 @@
+package org.elm.tools.external.elmmake.model;
+
+public class MessageSegment {
+    public String string;
+    public boolean bold;
+    public boolean underline;
+    public String color;
+}
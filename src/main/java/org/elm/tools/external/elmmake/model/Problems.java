@@ -1,5 +1,7 @@
 package org.elm.tools.external.elmmake.model;
 
+import java.util.List;
+
 public class Problems {
     public String tag;
     public String overview;
@@ -8,4 +10,28 @@ public class Problems {
     public Region region;
     public String type;
     public String file;
+    /** The styled segments of the details as reported by Elm 0.19; null for Elm 0.18. */
+    public List<MessageSegment> message;
+
+    private transient String htmlToolTip;
+
+    /** The details as plain text, joined from the message segments the first time it is needed. */
+    public String getDetails() {
+        if (details == null && message != null) {
+            StringBuilder text = new StringBuilder();
+            for (MessageSegment segment : message) {
+                text.append(segment.string);
+            }
+            details = text.toString();
+        }
+        return details;
+    }
+
+    public String getHtmlToolTip() {
+        return htmlToolTip;
+    }
+
+    public void setHtmlToolTip(String htmlToolTip) {
+        this.htmlToolTip = htmlToolTip;
+    }
 }
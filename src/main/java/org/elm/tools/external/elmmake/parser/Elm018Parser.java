@@ -1,17 +1,24 @@
 package org.elm.tools.external.elmmake.parser;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
 import org.elm.tools.external.elmmake.model.Problems;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
 
-public class Elm018Parser {
+import static org.elm.tools.external.elmmake.parser.ElmMakeJson.GSON;
 
-    public static List<Problems> parseProblemJsonElm018(String output) {
-        return new Gson().fromJson(output, new TypeToken<List<Problems>>() {
-        }.getType());
+public class Elm018Parser {
+    /** Reads a JSON array of problems, passing each problem to the consumer as soon as it is read. */
+    public static void parseProblemJsonElm018(Reader reader, Consumer<Problems> consumer) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            consumer.accept(GSON.fromJson(jsonReader, Problems.class));
+        }
+        jsonReader.endArray();
     }
 
 }
@@ -1,82 +1,123 @@
 package org.elm.tools.external.elmmake.parser;
 
-import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
 import org.elm.tools.external.elmmake.model.CompileError;
-import org.elm.tools.external.elmmake.model.CompileErrors;
 import org.elm.tools.external.elmmake.model.CompileProblem;
+import org.elm.tools.external.elmmake.model.MessageSegment;
 import org.elm.tools.external.elmmake.model.Problems;
+import org.elm.tools.external.utils.MessageHtml;
 import org.elm.tools.external.utils.NotificationUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
-public class Elm019Parser {
+import static org.elm.tools.external.elmmake.parser.ElmMakeJson.GSON;
 
-    public static List<Problems> parseCompileErrors(final String line) {
-        List<Problems> problems = new ArrayList<>();
+public class Elm019Parser {
+    private static final Type MESSAGE_TYPE = new TypeToken<List<MessageSegment>>() {
+    }.getType();
 
-        final CompileErrors compileErrors = new Gson().fromJson(line, CompileErrors.class);
-        if (compileErrors.errors != null) {
-            for (final CompileError error : compileErrors.errors) {
-                for (CompileProblem compileProblem : error.problems) {
-                    String detailsMessage = messagesToString(compileProblem.message);
+    /**
+     * Reads the JSON report of elm make, passing each problem to the consumer as soon as it is read, so the
+     * problems of the first modules are available before the report of the last module has arrived.
+     */
+    public static void parseCompileErrors(final Reader reader, final Consumer<Problems> consumer) throws IOException {
+        final JsonReader jsonReader = new JsonReader(reader);
+        final List<Problems> withoutType = new ArrayList<>();
+        String type = null;
+        String title = null;
+        List<MessageSegment> message = null;
 
-                    final Problems problem = new Problems();
-                    problem.file = error.path;
-                    problem.type = compileErrors.type;
-                    problem.region = compileProblem.region;
-                    problem.overview = compileProblem.title;
-                    problem.details = detailsMessage;
-                    problems.add(problem);
-                }
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            switch (jsonReader.nextName()) {
+                case "type":
+                    type = jsonReader.nextString();
+                    break;
+                case "title":
+                    title = jsonReader.nextString();
+                    break;
+                case "message":
+                    message = GSON.fromJson(jsonReader, MESSAGE_TYPE);
+                    break;
+                case "errors":
+                    final String errorsType = type;
+                    readErrors(jsonReader, errorsType != null ? problem -> {
+                        problem.type = errorsType;
+                        consumer.accept(problem);
+                    } : withoutType::add);
+                    break;
+                default:
+                    jsonReader.skipValue();
             }
         }
-        if ("error".equals(compileErrors.type) && compileErrors.message != null) {
-            NotificationUtil.showNotification(compileErrors.title, messagesToString(compileErrors.message));
+        jsonReader.endObject();
+
+        for (Problems problem : withoutType) {
+            problem.type = type;
+            consumer.accept(problem);
+        }
+        if ("error".equals(type) && message != null) {
+            NotificationUtil.showNotification(title, MessageHtml.toHtml(message));
         }
-        return problems;
     }
 
-    @NotNull
-    private static String messagesToString(final List<Object> messages) {
-        StringBuilder details = new StringBuilder();
-        for (Object message : messages) {
-            if (message instanceof String) {
-                details.append(message);
-            } else if (message instanceof Map) {
-                final Map messageMap = (Map) message;
-                final boolean bold = Boolean.TRUE.equals(messageMap.get("bold"));
-                final boolean underline = Boolean.TRUE.equals(messageMap.get("underline"));
-                final String color = (String) messageMap.get("color");
-                final String string = (String) messageMap.get("string");
+    private static void readErrors(final JsonReader jsonReader, final Consumer<Problems> consumer) throws IOException {
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            final CompileError error = new CompileError();
+            final List<Problems> withoutPath = new ArrayList<>();
 
-                details.append(createStyledMessage(bold, underline, color, string));
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                switch (jsonReader.nextName()) {
+                    case "path":
+                        error.path = jsonReader.nextString();
+                        break;
+                    case "name":
+                        error.name = jsonReader.nextString();
+                        break;
+                    case "problems":
+                        jsonReader.beginArray();
+                        while (jsonReader.hasNext()) {
+                            final Problems problem = toProblem(GSON.fromJson(jsonReader, CompileProblem.class));
+                            if (error.path != null) {
+                                problem.file = error.path;
+                                consumer.accept(problem);
+                            } else {
+                                withoutPath.add(problem);
+                            }
+                        }
+                        jsonReader.endArray();
+                        break;
+                    default:
+                        jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+
+            for (Problems problem : withoutPath) {
+                problem.file = error.path;
+                consumer.accept(problem);
             }
         }
-        return details.toString();
+        jsonReader.endArray();
     }
 
     @NotNull
-    private static String createStyledMessage(final boolean bold, final boolean underline, final String color, final String string) {
-        String style = "<font ";
-        if (color != null) {
-            style += "color=\"" + color + "\" style=\"background-color:black; ";
-        } else {
-            style += "style=\"";
-        }
-        if (bold) {
-            style += "font-weight:bolder; ";
-        }
-        if (underline) {
-            style += "text-decoration: underline; ";
-        }
-        style += "\">";
-        style += string;
-        style += "</font>";
-        return style;
+    private static Problems toProblem(final CompileProblem compileProblem) {
+        final Problems problem = new Problems();
+        problem.region = compileProblem.region;
+        problem.overview = compileProblem.title;
+        problem.message = compileProblem.message;
+        return problem;
     }
 
 }
@@ -0,0 +1,17 @@
+package org.elm.tools.external.elmmake.parser;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.elm.tools.external.elmmake.model.MessageSegment;
+
+/** Gson instances are thread-safe, so all parsers share a single one instead of creating one per report. */
+final class ElmMakeJson {
+    static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(MessageSegment.class, new MessageSegmentDeserializer())
+            .create();
+
+    private ElmMakeJson() {
+        // static class
+    }
+}
@@ -0,0 +1,41 @@
+package org.elm.tools.external.elmmake.parser;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import org.elm.tools.external.elmmake.model.MessageSegment;
+
+import java.lang.reflect.Type;
+
+/** Elm 0.19 messages mix plain strings and styled objects; both are read as a {@link MessageSegment}. */
+class MessageSegmentDeserializer implements JsonDeserializer<MessageSegment> {
+    @Override
+    public MessageSegment deserialize(final JsonElement json, final Type type, final JsonDeserializationContext context) throws JsonParseException {
+        final MessageSegment segment = new MessageSegment();
+        if (json.isJsonPrimitive()) {
+            segment.string = json.getAsString();
+            return segment;
+        }
+        final JsonObject object = json.getAsJsonObject();
+        if (isPresent(object, "bold")) {
+            segment.bold = object.get("bold").getAsBoolean();
+        }
+        if (isPresent(object, "underline")) {
+            segment.underline = object.get("underline").getAsBoolean();
+        }
+        if (isPresent(object, "color")) {
+            segment.color = object.get("color").getAsString();
+        }
+        if (isPresent(object, "string")) {
+            segment.string = object.get("string").getAsString();
+        }
+        return segment;
+    }
+
+    private static boolean isPresent(final JsonObject object, final String name) {
+        return object.has(name) && !object.get(name).isJsonNull();
+    }
+}
@@ -17,6 +17,8 @@ public class ElmPluginSettings implements PersistentStateComponent<ElmPluginSett
     public String nodeExecutable = "";
     @SuppressWarnings("WeakerAccess")
     public boolean pluginEnabled;
+    @SuppressWarnings("WeakerAccess")
+    public boolean compileUnsavedChanges;
 
     public static ElmPluginSettings getInstance(Project project) {
         return ServiceManager.getService(project, ElmPluginSettings.class);
@@ -45,8 +47,13 @@ public class ElmPluginSettings implements PersistentStateComponent<ElmPluginSett
         return pluginEnabled;
     }
 
-    public void save(final boolean pluginEnabled, final String elmMakePath, final String nodePath) {
+    public boolean isCompileUnsavedChanges() {
+        return compileUnsavedChanges;
+    }
+
+    public void save(final boolean pluginEnabled, final boolean compileUnsavedChanges, final String elmMakePath, final String nodePath) {
         this.pluginEnabled = pluginEnabled;
+        this.compileUnsavedChanges = compileUnsavedChanges;
         this.elmMakeExecutable = elmMakePath;
         this.nodeExecutable = nodePath;
     }
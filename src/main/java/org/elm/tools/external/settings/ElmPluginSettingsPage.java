@@ -40,6 +40,7 @@ public class ElmPluginSettingsPage implements Configurable {
     private final Project project;
 
     private JCheckBox pluginEnabledCheckbox;
+    private JCheckBox compileUnsavedChangesCheckbox;
     private JPanel panel;
     private JLabel versionLabel;
     private JLabel elmExeLabel;
@@ -82,6 +83,7 @@ public class ElmPluginSettingsPage implements Configurable {
         elmExeLabel.setEnabled(enabled);
         nodeExeField.setEnabled(enabled);
         nodeExeLabel.setEnabled(enabled);
+        compileUnsavedChangesCheckbox.setEnabled(enabled);
     }
 
     private void validate() {
@@ -197,6 +199,7 @@ public class ElmPluginSettingsPage implements Configurable {
     @Override
     public boolean isModified() {
         return pluginEnabledCheckbox.isSelected() != getSettings().isPluginEnabled()
+                || compileUnsavedChangesCheckbox.isSelected() != getSettings().isCompileUnsavedChanges()
                 || !elmExeField.getChildComponent().getText().equals(getSettings().getElmMakeExecutable())
                 || !nodeExeField.getChildComponent().getText().equals(getSettings().getNodeExecutable());
     }
@@ -209,13 +212,14 @@ public class ElmPluginSettingsPage implements Configurable {
 
     private void saveSettings() {
         ElmPluginSettings settings = getSettings();
-        settings.save(pluginEnabledCheckbox.isSelected(), elmExeField.getChildComponent().getText(), nodeExeField.getChildComponent().getText());
+        settings.save(pluginEnabledCheckbox.isSelected(), compileUnsavedChangesCheckbox.isSelected(), elmExeField.getChildComponent().getText(), nodeExeField.getChildComponent().getText());
         DaemonCodeAnalyzer.getInstance(project).restart();
     }
 
     private void loadSettings() {
         ElmPluginSettings settings = getSettings();
         pluginEnabledCheckbox.setSelected(settings.isPluginEnabled());
+        compileUnsavedChangesCheckbox.setSelected(settings.isCompileUnsavedChanges());
         elmExeField.getChildComponent().setText(settings.getElmMakeExecutable());
         nodeExeField.getChildComponent().setText(settings.getNodeExecutable());
 
@@ -0,0 +1,75 @@
+package org.elm.tools.external.utils;
+
+import org.elm.tools.external.elmmake.model.MessageSegment;
+
+import java.util.List;
+
+public class MessageHtml {
+    private MessageHtml() {
+        // static class
+    }
+
+    /** Renders the message segments in a single pass, keeping the spaces and line breaks of the compiler output. */
+    public static String toHtml(List<MessageSegment> segments) {
+        StringBuilder html = new StringBuilder();
+        appendSegments(html, segments);
+        return html.toString();
+    }
+
+    public static void appendSegments(StringBuilder html, List<MessageSegment> segments) {
+        for (MessageSegment segment : segments) {
+            if (!segment.bold && !segment.underline && segment.color == null) {
+                appendText(html, segment.string);
+            } else {
+                appendStyledText(html, segment);
+            }
+        }
+    }
+
+    private static void appendStyledText(StringBuilder html, MessageSegment segment) {
+        html.append("<font ");
+        if (segment.color != null) {
+            html.append("color=\"").append(segment.color).append("\" style=\"background-color:black; ");
+        } else {
+            html.append("style=\"");
+        }
+        if (segment.bold) {
+            html.append("font-weight:bolder; ");
+        }
+        if (segment.underline) {
+            html.append("text-decoration: underline; ");
+        }
+        html.append("\">");
+        appendText(html, segment.string);
+        html.append("</font>");
+    }
+
+    /** Appends the text escaped for HTML, with spaces as non-breaking spaces and new lines as line breaks. */
+    public static void appendText(StringBuilder html, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case ' ':
+                    html.append("&nbsp;");
+                    break;
+                case '\n':
+                    html.append("<br/>");
+                    break;
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                case '&':
+                    html.append("&amp;");
+                    break;
+                default:
+                    html.append(c);
+            }
+        }
+    }
+}
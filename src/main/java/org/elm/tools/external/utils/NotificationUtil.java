@@ -19,8 +19,12 @@ public class NotificationUtil {
     private static final String ELM_EXTERNAL_TOOLS = "Elm External Tools";
 
     public static void showNotification(String title, String message) {
+        showNotification(title, message, NotificationType.ERROR);
+    }
+
+    public static void showNotification(String title, String message, NotificationType type) {
         ApplicationManager.getApplication().invokeLater(() -> {
-            Notification notification = GROUP_DISPLAY_ID_BALLOON.createNotification(ELM_EXTERNAL_TOOLS, title, message, NotificationType.ERROR);
+            Notification notification = GROUP_DISPLAY_ID_BALLOON.createNotification(ELM_EXTERNAL_TOOLS, title, message, type);
             Optional<Project> projects = Arrays.stream(ProjectManager.getInstance().getOpenProjects()).findFirst();
             projects.ifPresent(project -> Notifications.Bus.notify(notification, project));
         });